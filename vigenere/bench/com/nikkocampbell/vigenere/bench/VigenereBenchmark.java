@@ -0,0 +1,206 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: VigenereBenchmark.java
+ *
+ * Measures the throughput and allocation rate of the core operations of the
+ * Vigenere class over generated ciphertexts of increasing size and several
+ * key lengths. Each measurement is preceded by a warm up period so that the
+ * JIT compiler has settled, and allocation is read from the per-thread
+ * counters of the JVM.
+ *
+ * Usage: VigenereBenchmark [maxSize] [operation...]
+ */
+package com.nikkocampbell.vigenere.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.nikkocampbell.vigenere.ChiSquaredKeySolver;
+import com.nikkocampbell.vigenere.Vigenere;
+import com.sun.management.ThreadMXBean;
+
+public class VigenereBenchmark {
+
+	private static final int[] SIZES = { 1000, 10000, 100000, 1000000,
+			10000000, 100000000 };
+	private static final int[] KEY_LENGTHS = { 3, 7, 13 };
+	private static final long WARMUP_NANOS = 1000000000L;
+	private static final long MEASURE_NANOS = 2000000000L;
+
+	private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	// Results are folded in here so the JIT cannot discard the work
+	private static volatile long sink;
+
+	/**
+	 * A single benchmarked operation over a prepared ciphertext
+	 */
+	private static abstract class Operation {
+		final String name;
+
+		Operation(String name) {
+			this.name = name;
+		}
+
+		abstract long run(Input input);
+	}
+
+	/**
+	 * The data shared by the operations for one size and key length
+	 */
+	private static class Input {
+		final String plaintext;
+		final String ciphertext;
+		final String keyword;
+		final int[] distances;
+
+		Input(int size, int keyLength, Random random) {
+			plaintext = generateText(size, random);
+			char[] key = new char[keyLength];
+			for (int i = 0; i < keyLength; i++) {
+				key[i] = (char) ('A' + random.nextInt(26));
+			}
+			keyword = new String(key);
+			ciphertext = Vigenere.encrypt(plaintext, keyword);
+			distances = new int[1000];
+			for (int i = 0; i < distances.length; i++) {
+				distances[i] = 1 + random.nextInt(Math.max(1,
+						ciphertext.length()));
+			}
+		}
+	}
+
+	private static final Operation[] OPERATIONS = {
+			new Operation("encrypt") {
+				long run(Input input) {
+					return Vigenere.encrypt(input.plaintext, input.keyword)
+							.length();
+				}
+			}, new Operation("decrypt") {
+				long run(Input input) {
+					return Vigenere.decrypt(input.ciphertext, input.keyword)
+							.length();
+				}
+			}, new Operation("format") {
+				long run(Input input) {
+					return Vigenere.format(input.plaintext).length();
+				}
+			}, new Operation("letterFrequency") {
+				long run(Input input) {
+					return Vigenere.letterFrequency(input.ciphertext)[0];
+				}
+			}, new Operation("calcIC") {
+				long run(Input input) {
+					return (long) (Vigenere.calcIC(input.ciphertext) * 1e6);
+				}
+			}, new Operation("kasiski") {
+				long run(Input input) {
+					return Vigenere.kasiski(input.ciphertext, 1, 20);
+				}
+			}, new Operation("calculateFactors") {
+				long run(Input input) {
+					long total = 0;
+					for (int distance : input.distances) {
+						total += Vigenere.calculateFactors(distance).size();
+					}
+					return total;
+				}
+			}, new Operation("estimateKey") {
+				long run(Input input) {
+					return Vigenere.estimateKey(input.ciphertext,
+							input.keyword.length()).charAt(0);
+				}
+			} };
+
+	public static void main(String[] args) {
+		int maxSize = args.length > 0 ? Integer.parseInt(args[0])
+				: SIZES[SIZES.length - 1];
+		List<String> selected = Arrays.asList(args).subList(
+				Math.min(1, args.length), args.length);
+
+		List<Operation> operations = new ArrayList<Operation>();
+		for (Operation op : OPERATIONS) {
+			if (selected.isEmpty() || selected.contains(op.name)) {
+				operations.add(op);
+			}
+		}
+
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+		System.out.printf("%-18s %10s %4s %12s %14s %14s%n", "operation",
+				"size", "key", "ops/s", "MB/s", "alloc B/op");
+		Random random = new Random(0x5eed);
+		for (int size : SIZES) {
+			if (size > maxSize) {
+				break;
+			}
+			for (int keyLength : KEY_LENGTHS) {
+				Input input = new Input(size, keyLength, random);
+				for (Operation op : operations) {
+					measure(op, input, size, keyLength);
+				}
+			}
+		}
+	}
+
+	private static void measure(Operation op, Input input, int size,
+			int keyLength) {
+		// Warm up
+		long end = System.nanoTime() + WARMUP_NANOS;
+		do {
+			sink += op.run(input);
+		} while (System.nanoTime() < end);
+
+		// Measure until the time is up, running at least once
+		long thread = Thread.currentThread().getId();
+		long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		end = start + MEASURE_NANOS;
+		long ops = 0;
+		long now;
+		do {
+			sink += op.run(input);
+			ops++;
+			now = System.nanoTime();
+		} while (now < end);
+		long allocated = THREADS.getThreadAllocatedBytes(thread)
+				- allocatedBefore;
+
+		double seconds = (now - start) / 1e9;
+		double opsPerSecond = ops / seconds;
+		System.out.printf("%-18s %10d %4d %12.1f %14.1f %14d%n", op.name,
+				size, keyLength, opsPerSecond, opsPerSecond * size / 1e6,
+				allocated / ops);
+	}
+
+	/**
+	 * Generates text with the letter frequencies of English and a space
+	 * roughly every five letters, so that the text also exercises formatting
+	 */
+	private static String generateText(int size, Random random) {
+		double[] cumulative = new double[26];
+		double total = 0;
+		for (int i = 0; i < 26; i++) {
+			total += ChiSquaredKeySolver.ENGLISH_FREQUENCIES[i];
+			cumulative[i] = total;
+		}
+		char[] text = new char[size];
+		for (int i = 0; i < size; i++) {
+			if (random.nextInt(6) == 0) {
+				text[i] = ' ';
+				continue;
+			}
+			double r = random.nextDouble() * total;
+			int letter = 0;
+			while (letter < 25 && cumulative[letter] < r) {
+				letter++;
+			}
+			text[i] = (char) ((random.nextBoolean() ? 'a' : 'A') + letter);
+		}
+		return new String(text);
+	}
+}
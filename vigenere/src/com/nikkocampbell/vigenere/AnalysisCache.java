@@ -0,0 +1,487 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: AnalysisCache.java
+ *
+ * Remembers the analysis of recently seen ciphertexts so that repeating the
+ * Kasiski test, the Friedman test or a key estimate on the same text does not
+ * scan it again. Texts are identified by a SHA-256 hash of their normalized
+ * letters, so texts differing only in case, spacing or punctuation share an
+ * entry. Each entry keeps the data the answers are derived from rather than
+ * the answers themselves: a {@link KeyLengthProfile} of every key length up
+ * to a maximum, and the column letter counts for every period. Changing the
+ * key length range is then answered from the entry without rescanning.
+ * Entries are evicted least recently used first once their total weight
+ * exceeds a bound.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+public class AnalysisCache {
+
+	/**
+	 * The largest key length kept by the default cache
+	 */
+	public static final int DEFAULT_MAX_KEY_LENGTH = 32;
+
+	/**
+	 * The weight bound of the default cache, in bytes
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+	private final int maxKeyLength;
+	private final long maxWeight;
+	private final QuadgramSolver solver;
+	private final LinkedHashMap<ByteBuffer, Entry> entries = new LinkedHashMap<ByteBuffer, Entry>(
+			16, 0.75f, true);
+	private long weight;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructs a cache with the default bounds
+	 */
+	public AnalysisCache() {
+		this(DEFAULT_MAX_KEY_LENGTH, DEFAULT_MAX_WEIGHT, new QuadgramSolver());
+	}
+
+	/**
+	 * Constructs a cache
+	 *
+	 * @param maxKeyLength
+	 *            the largest key length to keep data for; requests beyond it
+	 *            are computed directly and not cached
+	 * @param maxWeight
+	 *            the approximate number of bytes the entries may occupy
+	 * @param solver
+	 *            the solver used for key estimates
+	 */
+	public AnalysisCache(int maxKeyLength, long maxWeight,
+			QuadgramSolver solver) {
+		if (maxKeyLength < 1) {
+			throw new IllegalArgumentException("invalid maximum key length "
+					+ maxKeyLength);
+		}
+		this.maxKeyLength = maxKeyLength;
+		this.maxWeight = maxWeight;
+		this.solver = solver;
+	}
+
+	/**
+	 * Looks up the analysis of already normalized text, scanning the text if
+	 * it has not been seen. The letters are hashed once here, so a caller
+	 * asking several questions of the same text should ask them all of the
+	 * returned analysis.
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer},
+	 *            which must not be changed while the analysis is in use
+	 * @param length
+	 *            the number of letters in the text
+	 * @return the analysis of the text
+	 */
+	public Analysis analyze(byte[] letters, int length) {
+		return analyze(letters, length, null);
+	}
+
+	/**
+	 * Looks up the analysis of already normalized text, reporting progress
+	 * while the text is scanned. Interrupting the calling thread stops the
+	 * scan.
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer},
+	 *            which must not be changed while the analysis is in use
+	 * @param length
+	 *            the number of letters in the text
+	 * @param progress
+	 *            receives the percentage of the scan done, or null
+	 * @return the analysis of the text
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 */
+	public Analysis analyze(byte[] letters, int length, IntConsumer progress) {
+		if (length < 0 || length > letters.length) {
+			throw new IllegalArgumentException("invalid length " + length);
+		}
+		return new Analysis(letters, length, get(letters, length, progress));
+	}
+
+	/**
+	 * Performs the kasiski test, reusing the divisor counts of an earlier
+	 * analysis of the same text
+	 *
+	 * @param text
+	 *            a string encrypted with a Vigenere cipher
+	 * @param minKeyLength
+	 *            the minimum length that may be returned for the key length
+	 * @param maxKeyLength
+	 *            the maximum length that may be returned for the key length
+	 * @return the estimated length of the key used to encrypt the text
+	 * @see Vigenere#kasiski(String, int, int)
+	 */
+	public int kasiski(String text, int minKeyLength, int maxKeyLength) {
+		byte[] letters = TextNormalizer.toIndices(text);
+		if (!isCached(minKeyLength, maxKeyLength)) {
+			misses.incrementAndGet();
+			return Vigenere.kasiski(letters, letters.length, minKeyLength,
+					maxKeyLength);
+		}
+		return analyze(letters, letters.length).kasiski(minKeyLength,
+				maxKeyLength);
+	}
+
+	/**
+	 * Estimates the key length with the Friedman test, reusing the letter
+	 * counts of an earlier analysis of the same text
+	 *
+	 * @param text
+	 *            a string encrypted with a Vigenere cipher
+	 * @return the estimated length of the key used to encrypt the text
+	 * @see Vigenere#estimateKeyLength(String)
+	 */
+	public double estimateKeyLength(String text) {
+		byte[] letters = TextNormalizer.toIndices(text);
+		return analyze(letters, letters.length).estimateKeyLength();
+	}
+
+	/**
+	 * Returns the key length profile of a text, computed by an earlier
+	 * analysis of the same text if there was one
+	 *
+	 * @param text
+	 *            a string encrypted with a Vigenere cipher
+	 * @return the profile of every key length up to the cache's maximum
+	 */
+	public KeyLengthProfile getProfile(String text) {
+		return getProfile(text, null);
+	}
+
+	/**
+	 * Returns the key length profile of a text, reporting progress while the
+	 * text is scanned. Interrupting the calling thread stops the scan.
+	 *
+	 * @param text
+	 *            a string encrypted with a Vigenere cipher
+	 * @param progress
+	 *            receives the percentage of the scan done, or null
+	 * @return the profile of every key length up to the cache's maximum
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 */
+	public KeyLengthProfile getProfile(String text, IntConsumer progress) {
+		byte[] letters = TextNormalizer.toIndices(text);
+		return analyze(letters, letters.length, progress).getProfile();
+	}
+
+	/**
+	 * Estimates the key of a ciphertext, returning the earlier estimate if
+	 * the same text has been solved for the same key length
+	 *
+	 * @param ciphertext
+	 *            a string encrypted with a key of length keyLength
+	 * @param keyLength
+	 *            length of the key used to encrypt ciphertext
+	 * @return the best key found
+	 * @see QuadgramSolver#solve(byte[], int, int)
+	 */
+	public KeyEstimate estimateKey(String ciphertext, int keyLength) {
+		return estimateKey(ciphertext, keyLength, null);
+	}
+
+	/**
+	 * Estimates the key of a ciphertext, reporting progress while the text is
+	 * scanned and solved. Interrupting the calling thread stops the work.
+	 *
+	 * @param ciphertext
+	 *            a string encrypted with a key of length keyLength
+	 * @param keyLength
+	 *            length of the key used to encrypt ciphertext
+	 * @param progress
+	 *            receives the percentage of the work done, from any thread,
+	 *            or null
+	 * @return the best key found
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 * @see QuadgramSolver#solve(byte[], int, int, IntConsumer)
+	 */
+	public KeyEstimate estimateKey(String ciphertext, int keyLength,
+			IntConsumer progress) {
+		byte[] letters = TextNormalizer.toIndices(ciphertext);
+		// Scanning is quick next to the climbs of the solver
+		return analyze(letters, letters.length, scaled(progress, 0, 10))
+				.estimateKey(keyLength, scaled(progress, 10, 100));
+	}
+
+	/**
+	 * @return the number of requests that found their text already analyzed
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that had to scan their text
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of texts currently cached
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the approximate number of bytes occupied by the cached entries
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Removes every entry, leaving the hit and miss counts unchanged
+	 */
+	public synchronized void clear() {
+		for (Entry entry : entries.values()) {
+			entry.evicted = true;
+		}
+		entries.clear();
+		weight = 0;
+	}
+
+	/*
+	 * Whether the Kasiski test over a range can be answered from an entry
+	 */
+	private boolean isCached(int minKeyLength, int maxKeyLength) {
+		return minKeyLength >= 1 && maxKeyLength >= minKeyLength
+				&& maxKeyLength <= this.maxKeyLength;
+	}
+
+	/**
+	 * Returns the entry of a text, analyzing it on a miss. The analysis runs
+	 * outside the lock, so two threads missing on the same text at once may
+	 * both scan it.
+	 */
+	private Entry get(byte[] letters, int length, IntConsumer progress) {
+		ByteBuffer key = ByteBuffer.wrap(hash(letters, length));
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hits.incrementAndGet();
+				return entry;
+			}
+		}
+		misses.incrementAndGet();
+
+		Entry entry = new Entry(letters, length, maxKeyLength, progress);
+		synchronized (this) {
+			Entry previous = entries.put(key, entry);
+			if (previous != null) {
+				previous.evicted = true;
+				weight -= previous.weight;
+			}
+			weight += entry.weight;
+			evict();
+		}
+		return entry;
+	}
+
+	/*
+	 * Must hold the lock. Always keeps the most recent entry, even if it alone
+	 * exceeds the bound.
+	 */
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (weight > maxWeight && entries.size() > 1) {
+			Entry eldest = it.next();
+			eldest.evicted = true;
+			weight -= eldest.weight;
+			it.remove();
+		}
+	}
+
+	private static byte[] hash(byte[] letters, int length) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(letters, 0, length);
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * Maps the percentages reported to a consumer onto part of the range of
+	 * another
+	 */
+	private static IntConsumer scaled(final IntConsumer progress,
+			final int from, final int to) {
+		if (progress == null) {
+			return null;
+		}
+		return new IntConsumer() {
+			@Override
+			public void accept(int percent) {
+				progress.accept(from + (to - from) * percent / 100);
+			}
+		};
+	}
+
+	private static long keyWeight(int keyLength) {
+		return 64 + 10L * keyLength;
+	}
+
+	/**
+	 * The analysis of one text, answering each question from the cached entry
+	 * without normalizing or hashing the text again
+	 */
+	public class Analysis {
+		private final byte[] letters;
+		private final int length;
+		private final Entry entry;
+
+		Analysis(byte[] letters, int length, Entry entry) {
+			this.letters = letters;
+			this.length = length;
+			this.entry = entry;
+		}
+
+		/**
+		 * Performs the kasiski test. Ranges beyond the cache's maximum key
+		 * length are computed from the text.
+		 *
+		 * @param minKeyLength
+		 *            the minimum length that may be returned for the key length
+		 * @param maxKeyLength
+		 *            the maximum length that may be returned for the key length
+		 * @return the estimated length of the key used to encrypt the text
+		 * @see Vigenere#kasiski(byte[], int, int, int)
+		 */
+		public int kasiski(int minKeyLength, int maxKeyLength) {
+			if (!isCached(minKeyLength, maxKeyLength)) {
+				return Vigenere.kasiski(letters, length, minKeyLength,
+						maxKeyLength);
+			}
+			return entry.profile.getKasiskiKeyLength(minKeyLength,
+					maxKeyLength);
+		}
+
+		/**
+		 * Estimates the key length with the Friedman test
+		 *
+		 * @return the estimated length of the key used to encrypt the text
+		 * @see Vigenere#estimateKeyLength(int[])
+		 */
+		public double estimateKeyLength() {
+			return Vigenere.estimateKeyLength(entry.columns.getHistogram(1, 0));
+		}
+
+		/**
+		 * @return the profile of every key length up to the cache's maximum
+		 */
+		public KeyLengthProfile getProfile() {
+			return entry.profile;
+		}
+
+		/**
+		 * Estimates the key, returning the earlier estimate if the text has
+		 * been solved for the same key length
+		 *
+		 * @param keyLength
+		 *            length of the key used to encrypt the text
+		 * @return the best key found
+		 * @see QuadgramSolver#solve(byte[], int, int)
+		 */
+		public KeyEstimate estimateKey(int keyLength) {
+			return estimateKey(keyLength, null);
+		}
+
+		/**
+		 * Estimates the key, reporting progress while the text is solved.
+		 * Interrupting the calling thread stops the solver.
+		 *
+		 * @param keyLength
+		 *            length of the key used to encrypt the text
+		 * @param progress
+		 *            receives the percentage of the work done, from any
+		 *            thread, or null
+		 * @return the best key found
+		 * @throws CancellationException
+		 *             if the calling thread is interrupted
+		 * @see QuadgramSolver#solve(byte[], int, int, IntConsumer)
+		 */
+		public KeyEstimate estimateKey(int keyLength, IntConsumer progress) {
+			KeyEstimate key;
+			synchronized (entry) {
+				key = entry.keys.get(keyLength);
+			}
+			if (key != null) {
+				return key;
+			}
+			key = solver.solve(letters, length, keyLength, progress);
+			synchronized (AnalysisCache.this) {
+				synchronized (entry) {
+					if (entry.keys.put(keyLength, key) == null
+							&& !entry.evicted) {
+						weight += keyWeight(keyLength);
+						entry.weight += keyWeight(keyLength);
+					}
+				}
+				evict();
+			}
+			return key;
+		}
+	}
+
+	/**
+	 * The range independent analysis of one text
+	 */
+	private static class Entry {
+		// Letters counted between checks for interruption and progress
+		private static final int CHUNK = 64 * 1024;
+
+		final ColumnCounts columns;
+		final KeyLengthProfile profile;
+		final Map<Integer, KeyEstimate> keys = new HashMap<Integer, KeyEstimate>();
+		long weight;
+		boolean evicted;
+
+		Entry(byte[] letters, int length, int maxKeyLength,
+				IntConsumer progress) {
+			Thread thread = Thread.currentThread();
+			columns = new ColumnCounts(maxKeyLength);
+			for (int off = 0; off < length; off += CHUNK) {
+				ThreadPools.checkInterrupted(thread);
+				columns.addAll(letters, off, Math.min(CHUNK, length - off));
+				if (progress != null) {
+					// Counting the columns is most of the scan
+					progress.accept((int) (90L * Math.min(length, off + CHUNK)
+							/ length));
+				}
+			}
+			profile = new KeyLengthProfile(columns,
+					Vigenere.countTrigramDistances(letters, length, 1,
+							maxKeyLength));
+			// The column counts dominate: 26 ints per column of every period
+			weight = 128 + 4L * (maxKeyLength + 26L * maxKeyLength
+					* (maxKeyLength + 1) / 2);
+			if (progress != null) {
+				progress.accept(100);
+			}
+		}
+	}
+}
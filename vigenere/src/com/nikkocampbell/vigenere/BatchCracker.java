@@ -0,0 +1,208 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: BatchCracker.java
+ *
+ * A headless command line mode that cracks many ciphertexts at once. The
+ * input is either a directory, where each file holds one ciphertext, or a
+ * file with one ciphertext per line. Each ciphertext is run through the full
+ * analysis concurrently and the results are written as JSON Lines. Whatever
+ * a ciphertext fails with is written as an error line in place of its result.
+ *
+ * Usage: BatchCracker [-o output] [-c concurrency] [-min n] [-max n] input
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BatchCracker {
+
+	private final Writer out;
+	private final Semaphore permits;
+	private final int concurrency;
+	private final int minKeyLength;
+	private final int maxKeyLength;
+	// The first write to fail, after which nothing more is submitted
+	private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+	private ExecutorService executor;
+
+	/**
+	 * Constructs a new batch cracker
+	 *
+	 * @param out
+	 *            the writer to receive one JSON object per line
+	 * @param concurrency
+	 *            the maximum number of ciphertexts analyzed at once
+	 * @param minKeyLength
+	 *            the minimum key length to consider
+	 * @param maxKeyLength
+	 *            the maximum key length to consider
+	 */
+	public BatchCracker(Writer out, int concurrency, int minKeyLength,
+			int maxKeyLength) {
+		this.out = out;
+		this.concurrency = concurrency;
+		this.permits = new Semaphore(concurrency);
+		this.minKeyLength = minKeyLength;
+		this.maxKeyLength = maxKeyLength;
+	}
+
+	/**
+	 * Cracks every ciphertext in a directory or line-delimited file, returning
+	 * once all results have been written. If writing a result fails no more
+	 * ciphertexts are started, and the failure is thrown once those already
+	 * started have finished.
+	 *
+	 * @param input
+	 *            a directory of ciphertext files, or a file with one ciphertext
+	 *            per line
+	 * @return the number of ciphertexts submitted
+	 * @throws IOException
+	 *             if the input cannot be read or the output written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for results
+	 */
+	public int run(Path input) throws IOException, InterruptedException {
+		executor = ThreadPools.newTaskExecutor(concurrency);
+		failure.set(null);
+		int count = 0;
+		try {
+			if (Files.isDirectory(input)) {
+				try (DirectoryStream<Path> files = Files
+						.newDirectoryStream(input)) {
+					for (Path file : files) {
+						if (failure.get() != null) {
+							break;
+						}
+						if (Files.isRegularFile(file)) {
+							submit(file.getFileName().toString(), new String(
+									Files.readAllBytes(file),
+									StandardCharsets.UTF_8));
+							count++;
+						}
+					}
+				}
+			} else {
+				try (BufferedReader reader = Files.newBufferedReader(input,
+						StandardCharsets.UTF_8)) {
+					String line;
+					int lineNumber = 0;
+					while (failure.get() == null
+							&& (line = reader.readLine()) != null) {
+						lineNumber++;
+						if (!line.trim().isEmpty()) {
+							submit(Integer.toString(lineNumber), line);
+							count++;
+						}
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			if (failure.get() == null) {
+				out.flush();
+			}
+		}
+		IOException e = failure.get();
+		if (e != null) {
+			throw e;
+		}
+		return count;
+	}
+
+	/**
+	 * Waits for a free slot and starts cracking a ciphertext, so that no more
+	 * than the concurrency limit are read into memory at once
+	 */
+	private void submit(final String id, final String ciphertext)
+			throws InterruptedException {
+		permits.acquire();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					String json;
+					try {
+						json = CrackResult.crack(id, ciphertext, minKeyLength,
+								maxKeyLength).toJson();
+					} catch (Throwable e) {
+						json = Json.error(id, e);
+					}
+					write(json);
+				} finally {
+					permits.release();
+				}
+			}
+		});
+	}
+
+	/*
+	 * Writes a result unless an earlier write has failed, recording the
+	 * failure for run to throw
+	 */
+	private void write(String json) {
+		synchronized (out) {
+			if (failure.get() != null) {
+				return;
+			}
+			try {
+				out.write(json);
+				out.write('\n');
+			} catch (IOException e) {
+				failure.compareAndSet(null, e);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		VigenereMetrics.installIfRequested();
+		Path input = null;
+		Path output = null;
+		int concurrency = Runtime.getRuntime().availableProcessors() * 4;
+		int minKeyLength = 1;
+		int maxKeyLength = 20;
+		for (int i = 0; i < args.length; i++) {
+			if ("-o".equals(args[i]) && i + 1 < args.length) {
+				output = Paths.get(args[++i]);
+			} else if ("-c".equals(args[i]) && i + 1 < args.length) {
+				concurrency = Integer.parseInt(args[++i]);
+			} else if ("-min".equals(args[i]) && i + 1 < args.length) {
+				minKeyLength = Integer.parseInt(args[++i]);
+			} else if ("-max".equals(args[i]) && i + 1 < args.length) {
+				maxKeyLength = Integer.parseInt(args[++i]);
+			} else {
+				input = Paths.get(args[i]);
+			}
+		}
+		if (input == null) {
+			System.err.println("Usage: BatchCracker [-o output] "
+					+ "[-c concurrency] [-min n] [-max n] input");
+			System.exit(2);
+		}
+
+		Writer out = output == null ? new BufferedWriter(
+				new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+				: Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+		try {
+			int count = new BatchCracker(out, concurrency, minKeyLength,
+					maxKeyLength).run(input);
+			System.err.println("Cracked " + count + " ciphertexts");
+		} finally {
+			out.close();
+		}
+	}
+}
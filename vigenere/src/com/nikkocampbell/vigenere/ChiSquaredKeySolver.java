@@ -0,0 +1,183 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: ChiSquaredKeySolver.java
+ *
+ * Recovers the key of a Vigenere ciphertext of known key length. The letters
+ * of each column are counted in a single pass, then every possible shift of
+ * each column is scored by the chi-squared statistic of its decryption
+ * against a reference letter distribution. The shift with the lowest
+ * statistic gives the key letter for that column.
+ */
+package com.nikkocampbell.vigenere;
+
+public class ChiSquaredKeySolver {
+
+	/**
+	 * The relative frequency of each letter in English text
+	 */
+	public static final double[] ENGLISH_FREQUENCIES = { 0.08167, 0.01492,
+			0.02782, 0.04253, 0.12702, 0.02228, 0.02015, 0.06094, 0.06966,
+			0.00153, 0.00772, 0.04025, 0.02406, 0.06749, 0.07507, 0.01929,
+			0.00095, 0.05987, 0.06327, 0.09056, 0.02758, 0.00978, 0.02360,
+			0.00150, 0.01974, 0.00074 };
+
+	/**
+	 * A solver scoring against {@link #ENGLISH_FREQUENCIES}
+	 */
+	public static final ChiSquaredKeySolver ENGLISH = new ChiSquaredKeySolver(
+			ENGLISH_FREQUENCIES);
+
+	/*
+	 * inverseExpected[shift][c] is 1 / p(c - shift), the inverse of the
+	 * reference probability of the plaintext letter that ciphertext letter c
+	 * decrypts to under shift
+	 */
+	private final double[][] inverseExpected = new double[26][26];
+
+	/**
+	 * Constructs a solver scoring against a reference letter distribution
+	 *
+	 * @param frequencies
+	 *            the relative frequency of each letter A-Z in the plaintext
+	 *            language; normalized so that they need not sum to 1
+	 */
+	public ChiSquaredKeySolver(double[] frequencies) {
+		if (frequencies.length != 26) {
+			throw new IllegalArgumentException(
+					"expected 26 letter frequencies");
+		}
+		double sum = 0;
+		for (int i = 0; i < 26; i++) {
+			sum += frequencies[i];
+		}
+		for (int shift = 0; shift < 26; shift++) {
+			for (int c = 0; c < 26; c++) {
+				double p = frequencies[(c - shift + 26) % 26] / sum;
+				inverseExpected[shift][c] = 1 / Math.max(p, 1e-6);
+			}
+		}
+	}
+
+	/**
+	 * Estimates the key of a ciphertext. Characters that are not letters are
+	 * ignored.
+	 *
+	 * @param ciphertext
+	 *            a string encrypted with a key of length keyLength
+	 * @param keyLength
+	 *            length of the key used to encrypt ciphertext
+	 * @return an estimate of the key used to encrypt ciphertext
+	 */
+	public KeyEstimate estimateKey(String ciphertext, int keyLength) {
+		int[] histograms = new int[keyLength * 26];
+		int column = 0;
+		for (int i = 0; i < ciphertext.length(); i++) {
+			int letter = TextNormalizer.indexOf(ciphertext.charAt(i));
+			if (letter < 0) {
+				continue;
+			}
+			histograms[column * 26 + letter]++;
+			if (++column == keyLength) {
+				column = 0;
+			}
+		}
+		return estimateKey(histograms, keyLength);
+	}
+
+	/**
+	 * Estimates the key of already normalized ciphertext
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the ciphertext
+	 * @param keyLength
+	 *            length of the key used to encrypt the ciphertext
+	 * @return an estimate of the key used to encrypt the ciphertext
+	 */
+	public KeyEstimate estimateKey(byte[] letters, int length, int keyLength) {
+		int[] histograms = new int[keyLength * 26];
+		int column = 0;
+		for (int i = 0; i < length; i++) {
+			histograms[column * 26 + letters[i]]++;
+			if (++column == keyLength) {
+				column = 0;
+			}
+		}
+		return estimateKey(histograms, keyLength);
+	}
+
+	/**
+	 * Estimates a key from previously gathered column counts
+	 *
+	 * @param counts
+	 *            the column counts of a ciphertext
+	 * @param keyLength
+	 *            length of the key used to encrypt the ciphertext, no greater
+	 *            than the maximum period of counts
+	 * @return an estimate of the key used to encrypt the ciphertext
+	 */
+	public KeyEstimate estimateKey(ColumnCounts counts, int keyLength) {
+		int[] histograms = new int[keyLength * 26];
+		for (int column = 0; column < keyLength; column++) {
+			for (int letter = 0; letter < 26; letter++) {
+				histograms[column * 26 + letter] = counts.getCount(keyLength,
+						column, letter);
+			}
+		}
+		return estimateKey(histograms, keyLength);
+	}
+
+	/**
+	 * Calculates the chi-squared statistic of a column decrypted with a shift
+	 *
+	 * @param histogram
+	 *            the letter frequencies of the column
+	 * @param shift
+	 *            the numeric value (0-25) of the key letter to try
+	 * @return the chi-squared statistic against the reference distribution
+	 */
+	public double chiSquared(int[] histogram, int shift) {
+		return chiSquared(histogram, 0, shift);
+	}
+
+	private KeyEstimate estimateKey(int[] histograms, int keyLength) {
+		char[] key = new char[keyLength];
+		double[] confidences = new double[keyLength];
+		for (int column = 0; column < keyLength; column++) {
+			double best = Double.MAX_VALUE;
+			double second = Double.MAX_VALUE;
+			int bestShift = 0;
+			for (int shift = 0; shift < 26; shift++) {
+				double chi = chiSquared(histograms, column * 26, shift);
+				if (chi < best) {
+					second = best;
+					best = chi;
+					bestShift = shift;
+				} else if (chi < second) {
+					second = chi;
+				}
+			}
+			key[column] = (char) (bestShift + 'A');
+			confidences[column] = best < second ? 1 - best / second : 0;
+		}
+		return new KeyEstimate(new String(key), confidences);
+	}
+
+	/*
+	 * Expanding sum((o - N p)^2 / (N p)) gives sum(o^2 / p) / N - N, which
+	 * needs only one multiply-add per letter with the inverse table
+	 */
+	private double chiSquared(int[] histograms, int base, int shift) {
+		double[] inverse = inverseExpected[shift];
+		long n = 0;
+		double sum = 0;
+		for (int c = 0; c < 26; c++) {
+			long o = histograms[base + c];
+			n += o;
+			sum += o * o * inverse[c];
+		}
+		return n == 0 ? Double.NaN : sum / n - n;
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: ColumnCounts.java
+ *
+ * Letter counts for every column of a text split by every period from 1 up to
+ * a maximum. A text encrypted with a key of length L splits into L columns
+ * that were each shifted by a single letter, so these counts are the basis of
+ * both the periodic Index of Coincidence and the frequency analysis of each
+ * key letter. All counts are kept in one flat int array and are filled in a
+ * single pass over the text.
+ */
+package com.nikkocampbell.vigenere;
+
+public class ColumnCounts {
+
+	private final int maxPeriod;
+	private final int[] offsets;
+	private final int[] columns;
+	private final int[] counts;
+	private int length;
+
+	/**
+	 * Constructs empty counts for the periods 1 to maxPeriod
+	 *
+	 * @param maxPeriod
+	 *            the largest period to keep counts for
+	 */
+	public ColumnCounts(int maxPeriod) {
+		if (maxPeriod < 1) {
+			throw new IllegalArgumentException("invalid maximum period "
+					+ maxPeriod);
+		}
+		this.maxPeriod = maxPeriod;
+		offsets = new int[maxPeriod + 1];
+		columns = new int[maxPeriod + 1];
+		int size = 0;
+		for (int period = 1; period <= maxPeriod; period++) {
+			offsets[period] = size;
+			size += period * 26;
+		}
+		counts = new int[size];
+	}
+
+	/**
+	 * Adds the next letter of the text
+	 *
+	 * @param letter
+	 *            the numeric value (0-25) of the letter
+	 */
+	public void add(int letter) {
+		for (int period = 1; period <= maxPeriod; period++) {
+			int column = columns[period];
+			counts[offsets[period] + column * 26 + letter]++;
+			columns[period] = ++column == period ? 0 : column;
+		}
+		length++;
+	}
+
+	/**
+	 * Adds each letter of a text. Characters that are not letters are
+	 * ignored.
+	 *
+	 * @param text
+	 *            the text to add
+	 */
+	public void addAll(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			int letter = TextNormalizer.indexOf(text.charAt(i));
+			if (letter >= 0) {
+				add(letter);
+			}
+		}
+	}
+
+	/**
+	 * Adds each letter of already normalized text
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param off
+	 *            the position of the first letter to add
+	 * @param len
+	 *            the number of letters to add
+	 */
+	public void addAll(byte[] letters, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			add(letters[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of times a letter occurs in a column
+	 *
+	 * @param period
+	 *            the number of columns the text is split into
+	 * @param column
+	 *            the column, counting from 0
+	 * @param letter
+	 *            the numeric value (0-25) of the letter
+	 * @return the number of occurrences of letter in the column
+	 */
+	public int getCount(int period, int column, int letter) {
+		return counts[offsets[period] + column * 26 + letter];
+	}
+
+	/**
+	 * Returns the letter frequencies of a column
+	 *
+	 * @param period
+	 *            the number of columns the text is split into
+	 * @param column
+	 *            the column, counting from 0
+	 * @return an integer array containing the number of occurrences of each
+	 *         letter within the column
+	 */
+	public int[] getHistogram(int period, int column) {
+		int[] histogram = new int[26];
+		System.arraycopy(counts, offsets[period] + column * 26, histogram, 0,
+				26);
+		return histogram;
+	}
+
+	/**
+	 * Returns the number of letters in a column
+	 *
+	 * @param period
+	 *            the number of columns the text is split into
+	 * @param column
+	 *            the column, counting from 0
+	 * @return the number of letters in the column
+	 */
+	public int getColumnLength(int period, int column) {
+		return length / period + (column < length % period ? 1 : 0);
+	}
+
+	/**
+	 * Calculates the average Index of Coincidence of the columns for a period.
+	 * Columns with fewer than two letters are left out of the average.
+	 *
+	 * @param period
+	 *            the number of columns the text is split into
+	 * @return the average Index of Coincidence, or 0 if no column has two
+	 *         letters
+	 * @see Vigenere#calcIC(int[])
+	 */
+	public double getAverageIC(int period) {
+		double total = 0;
+		int used = 0;
+		for (int column = 0; column < period; column++) {
+			long n = getColumnLength(period, column);
+			if (n < 2) {
+				continue;
+			}
+			int base = offsets[period] + column * 26;
+			long sum = 0;
+			for (int letter = 0; letter < 26; letter++) {
+				long f = counts[base + letter];
+				sum += f * (f - 1);
+			}
+			total += (double) sum / (n * (n - 1));
+			used++;
+		}
+		return used == 0 ? 0 : total / used;
+	}
+
+	/**
+	 * Returns the number of letters added so far
+	 *
+	 * @return the number of letters added
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the largest period counts are kept for
+	 *
+	 * @return the largest period
+	 */
+	public int getMaxPeriod() {
+		return maxPeriod;
+	}
+}
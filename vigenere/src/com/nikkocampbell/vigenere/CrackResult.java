@@ -0,0 +1,146 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: CrackResult.java
+ *
+ * The outcome of running the full cryptanalysis of a single ciphertext: the
+ * Kasiski and Friedman key length estimates, the estimated key and the
+ * resulting decryption.
+ */
+package com.nikkocampbell.vigenere;
+
+public class CrackResult {
+
+	private final String id;
+	private final int kasiskiKeyLength;
+	private final double friedmanKeyLength;
+	private final KeyEstimate key;
+	private final String plaintext;
+
+	/**
+	 * Constructs a new result
+	 *
+	 * @param id
+	 *            an identifier for the ciphertext, such as its file name
+	 * @param kasiskiKeyLength
+	 *            the key length found by the Kasiski test
+	 * @param friedmanKeyLength
+	 *            the key length estimated by the Friedman test
+	 * @param key
+	 *            the estimated key
+	 * @param plaintext
+	 *            the ciphertext decrypted with the estimated key
+	 */
+	public CrackResult(String id, int kasiskiKeyLength,
+			double friedmanKeyLength, KeyEstimate key, String plaintext) {
+		this.id = id;
+		this.kasiskiKeyLength = kasiskiKeyLength;
+		this.friedmanKeyLength = friedmanKeyLength;
+		this.key = key;
+		this.plaintext = plaintext;
+	}
+
+	/**
+	 * Runs the Kasiski test, the Friedman test, key estimation and decryption
+	 * on a ciphertext
+	 *
+	 * @param id
+	 *            an identifier for the ciphertext, such as its file name
+	 * @param ciphertext
+	 *            a string encrypted with a Vigenere cipher
+	 * @param minKeyLength
+	 *            the minimum key length to consider
+	 * @param maxKeyLength
+	 *            the maximum key length to consider
+	 * @return the result of the analysis
+	 */
+	public static CrackResult crack(String id, String ciphertext,
+			int minKeyLength, int maxKeyLength) {
+		// Normalize once and share the letters between every stage
+		byte[] letters = TextNormalizer.toIndices(ciphertext);
+		int length = letters.length;
+		int keyLength = Vigenere.kasiski(letters, length, minKeyLength,
+				maxKeyLength);
+		double friedman = Vigenere.estimateKeyLength(Vigenere.letterFrequency(
+				letters, length));
+		KeyEstimate key = LanguageModel.getDefaultKeySolver().estimateKey(
+				letters, length, keyLength);
+
+		byte[] plaintext = new byte[length];
+		new ShiftKernel(key.getKey(), false).apply(letters, 0, plaintext, 0,
+				length, 0);
+		return new CrackResult(id, keyLength, friedman, key,
+				TextNormalizer.toString(plaintext, length));
+	}
+
+	/**
+	 * Returns the identifier of the ciphertext
+	 *
+	 * @return the identifier of the ciphertext
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the key length found by the Kasiski test
+	 *
+	 * @return the Kasiski key length
+	 */
+	public int getKasiskiKeyLength() {
+		return kasiskiKeyLength;
+	}
+
+	/**
+	 * Returns the key length estimated by the Friedman test
+	 *
+	 * @return the Friedman key length
+	 */
+	public double getFriedmanKeyLength() {
+		return friedmanKeyLength;
+	}
+
+	/**
+	 * Returns the estimated key
+	 *
+	 * @return the estimated key with the confidence in each letter
+	 */
+	public KeyEstimate getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the ciphertext decrypted with the estimated key
+	 *
+	 * @return the decrypted text
+	 */
+	public String getPlaintext() {
+		return plaintext;
+	}
+
+	/**
+	 * Returns the result as a single line JSON object
+	 *
+	 * @return the JSON representation of this result
+	 */
+	public String toJson() {
+		StringBuilder out = new StringBuilder();
+		out.append("{\"id\":");
+		Json.quote(out, id);
+		out.append(",\"kasiskiKeyLength\":").append(kasiskiKeyLength);
+		out.append(",\"friedmanKeyLength\":");
+		Json.number(out, friedmanKeyLength);
+		out.append(",\"key\":");
+		Json.quote(out, key.getKey());
+		out.append(",\"confidence\":[");
+		for (int i = 0; i < key.getKey().length(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			Json.number(out, key.getConfidence(i));
+		}
+		out.append("],\"plaintext\":");
+		Json.quote(out, plaintext);
+		return out.append('}').toString();
+	}
+}
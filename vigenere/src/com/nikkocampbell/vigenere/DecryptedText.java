@@ -0,0 +1,69 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: DecryptedText.java
+ *
+ * The decryption of normalized ciphertext, computed only for the ranges that
+ * are read. The key phase of any position follows from the position alone,
+ * so a range from anywhere in the text is decrypted without touching the
+ * letters before it.
+ */
+package com.nikkocampbell.vigenere;
+
+public class DecryptedText implements TextSource {
+
+	private final byte[] letters;
+	private final int length;
+	private final ShiftKernel kernel;
+
+	/**
+	 * Constructs the decryption of a ciphertext
+	 *
+	 * @param ciphertext
+	 *            a ciphertext string to be decoded
+	 * @param keyword
+	 *            a string to use in the decryption of ciphertext
+	 */
+	public DecryptedText(String ciphertext, String keyword) {
+		this(TextNormalizer.toIndices(ciphertext), keyword);
+	}
+
+	private DecryptedText(byte[] letters, String keyword) {
+		this(letters, letters.length, keyword);
+	}
+
+	/**
+	 * Constructs the decryption of already normalized ciphertext
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer},
+	 *            which must not be modified afterwards
+	 * @param length
+	 *            the number of letters in the ciphertext
+	 * @param keyword
+	 *            a string to use in the decryption
+	 */
+	public DecryptedText(byte[] letters, int length, String keyword) {
+		this.letters = letters;
+		this.length = length;
+		this.kernel = new ShiftKernel(keyword, false);
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public void getChars(int start, int end, char[] dst, int dstOff) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("range " + start + "-" + end
+					+ " of " + length);
+		}
+		byte[] plain = new byte[end - start];
+		kernel.apply(letters, start, plain, 0, plain.length, start);
+		for (int i = 0; i < plain.length; i++) {
+			dst[dstOff + i] = (char) (plain[i] + 'A');
+		}
+	}
+}
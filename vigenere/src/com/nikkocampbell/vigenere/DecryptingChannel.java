@@ -0,0 +1,318 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: DecryptingChannel.java
+ *
+ * A read-only channel over ciphertext that decrypts only the bytes actually
+ * read, so a slice from the middle of a huge file can be read without
+ * decrypting everything before it. Bytes keep their positions: letters are
+ * decrypted in place keeping their case and every other byte is passed
+ * through, as by {@link Vigenere#decryptPreservingFormat(String, String)}.
+ * Only ASCII letters are treated as letters.
+ *
+ * The key letter at a position depends on the number of letters before it.
+ * For ciphertext made only of letters, such as the output of
+ * {@link FileCipher}, that is simply the position. Otherwise a sparse index
+ * holds the letter count at the start of every block of the file, so finding
+ * the key phase costs at most one block of counting. The index is built
+ * lazily and only as far as the furthest position read, so without one the
+ * first read at a position costs a scan of every byte before it: O(offset).
+ * An index built by one channel can be taken with {@link #getIndex()} and
+ * given to a later channel over the same ciphertext, which then finds the
+ * key phase anywhere in the indexed part at once.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class DecryptingChannel implements SeekableByteChannel {
+
+	/**
+	 * The number of bytes covered by each entry of the index
+	 */
+	public static final int BLOCK_SIZE = 16 * 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final SeekableByteChannel source;
+	private final KeyStream keyStream;
+	private final boolean lettersOnly;
+	private final byte[] buf = new byte[Math.max(BUFFER_SIZE, BLOCK_SIZE)];
+	private long position;
+
+	// blockLetters[i] is the number of letters before block i
+	private long[] blockLetters = new long[16];
+	private int indexedBlocks = 1;
+
+	// The letter count at the end of the last read, for sequential reads
+	private long cursorPosition;
+	private long cursorLetters;
+
+	/**
+	 * Opens a channel decrypting a file that may hold non-letters
+	 *
+	 * @param file
+	 *            the file of ciphertext
+	 * @param keyword
+	 *            the keyword the file was encrypted with
+	 * @return a channel reading the plaintext
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static DecryptingChannel open(Path file, String keyword)
+			throws IOException {
+		return new DecryptingChannel(FileChannel.open(file,
+				StandardOpenOption.READ), keyword, false);
+	}
+
+	/**
+	 * Opens a channel decrypting a file that may hold non-letters, starting
+	 * from an index of an earlier channel over the same file
+	 *
+	 * @param file
+	 *            the file of ciphertext
+	 * @param keyword
+	 *            the keyword the file was encrypted with
+	 * @param index
+	 *            the letter count before each block of the file, as returned
+	 *            by {@link #getIndex()}
+	 * @return a channel reading the plaintext
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static DecryptingChannel open(Path file, String keyword,
+			long[] index) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new DecryptingChannel(channel, keyword, index);
+		} catch (RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Constructs a channel decrypting the bytes of another channel
+	 *
+	 * @param source
+	 *            the channel supplying ciphertext, which is closed with this
+	 *            channel
+	 * @param keyword
+	 *            the keyword the ciphertext was encrypted with
+	 * @param lettersOnly
+	 *            true if the ciphertext holds nothing but letters, so no index
+	 *            is needed
+	 */
+	public DecryptingChannel(SeekableByteChannel source, String keyword,
+			boolean lettersOnly) {
+		this.source = source;
+		this.keyStream = new KeyStream(keyword, false);
+		this.lettersOnly = lettersOnly;
+	}
+
+	/**
+	 * Constructs a channel decrypting ciphertext that may hold non-letters,
+	 * starting from a prebuilt index. The index may cover only part of the
+	 * ciphertext and is extended as needed, but must have been built over the
+	 * same bytes.
+	 *
+	 * @param source
+	 *            the channel supplying ciphertext, which is closed with this
+	 *            channel
+	 * @param keyword
+	 *            the keyword the ciphertext was encrypted with
+	 * @param index
+	 *            the letter count before each block of {@value #BLOCK_SIZE}
+	 *            bytes, starting with 0 for the first block
+	 */
+	public DecryptingChannel(SeekableByteChannel source, String keyword,
+			long[] index) {
+		this(source, keyword, false);
+		if (index.length == 0 || index[0] != 0) {
+			throw new IllegalArgumentException("index must start with 0");
+		}
+		for (int i = 1; i < index.length; i++) {
+			long letters = index[i] - index[i - 1];
+			if (letters < 0 || letters > BLOCK_SIZE) {
+				throw new IllegalArgumentException("invalid index at block "
+						+ i);
+			}
+		}
+		blockLetters = Arrays.copyOf(index, Math.max(16, index.length));
+		indexedBlocks = index.length;
+	}
+
+	/**
+	 * Returns the index built so far, for reuse by a later channel over the
+	 * same ciphertext. Channels over letters alone need no index.
+	 *
+	 * @return the letter count before each indexed block of
+	 *         {@value #BLOCK_SIZE} bytes
+	 */
+	public synchronized long[] getIndex() {
+		return Arrays.copyOf(blockLetters, indexedBlocks);
+	}
+
+	/**
+	 * Indexes the whole of the ciphertext in one sequential pass, so that no
+	 * later read has to scan ahead of the index
+	 *
+	 * @return the letter count before each block of {@value #BLOCK_SIZE}
+	 *         bytes
+	 * @throws IOException
+	 *             if the ciphertext cannot be read
+	 * @see #getIndex()
+	 */
+	public synchronized long[] buildIndex() throws IOException {
+		ensureOpen();
+		if (!lettersOnly) {
+			ensureIndexed((int) (source.size() / BLOCK_SIZE));
+		}
+		return getIndex();
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		ensureOpen();
+		long size = source.size();
+		if (position >= size) {
+			return -1;
+		}
+		int len = (int) Math.min(Math.min(dst.remaining(), BUFFER_SIZE), size
+				- position);
+		if (len == 0) {
+			return 0;
+		}
+
+		long letters = lettersBefore(position);
+		keyStream.seek(letters);
+		int n = readFully(position, buf, len);
+		letters += countLetters(buf, n);
+		keyStream.transformPreservingFormat(buf, 0, n);
+		dst.put(buf, 0, n);
+
+		position += n;
+		cursorPosition = position;
+		cursorLetters = letters;
+		return n;
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public synchronized long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	@Override
+	public synchronized SeekableByteChannel position(long newPosition)
+			throws IOException {
+		ensureOpen();
+		if (newPosition < 0) {
+			throw new IllegalArgumentException("negative position");
+		}
+		position = newPosition;
+		return this;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return source.size();
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return source.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	/**
+	 * Returns the number of letters before a position, from the sequential
+	 * read cursor if it is there, otherwise from the index and a count of
+	 * the letters between the start of the block and the position
+	 */
+	private long lettersBefore(long pos) throws IOException {
+		if (lettersOnly) {
+			return pos;
+		}
+		if (pos == cursorPosition) {
+			return cursorLetters;
+		}
+		int block = (int) (pos / BLOCK_SIZE);
+		ensureIndexed(block);
+		long blockStart = (long) block * BLOCK_SIZE;
+		int n = readFully(blockStart, buf, (int) (pos - blockStart));
+		cursorPosition = pos;
+		cursorLetters = blockLetters[block] + countLetters(buf, n);
+		return cursorLetters;
+	}
+
+	/*
+	 * Extends the index by counting whole blocks until the letter count at
+	 * the start of block is known
+	 */
+	private void ensureIndexed(int block) throws IOException {
+		while (indexedBlocks <= block) {
+			int previous = indexedBlocks - 1;
+			int n = readFully((long) previous * BLOCK_SIZE, buf, BLOCK_SIZE);
+			if (indexedBlocks == blockLetters.length) {
+				blockLetters = Arrays.copyOf(blockLetters,
+						blockLetters.length * 2);
+			}
+			blockLetters[indexedBlocks++] = blockLetters[previous]
+					+ countLetters(buf, n);
+		}
+	}
+
+	private static int countLetters(byte[] b, int len) {
+		int count = 0;
+		for (int i = 0; i < len; i++) {
+			if (KeyStream.letterValue(b[i]) >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Reads up to len bytes from pos of the source, stopping early only at
+	 * the end of the source
+	 */
+	private int readFully(long pos, byte[] dst, int len) throws IOException {
+		ByteBuffer target = ByteBuffer.wrap(dst, 0, len);
+		source.position(pos);
+		while (target.hasRemaining()) {
+			if (source.read(target) < 0) {
+				break;
+			}
+		}
+		return target.position();
+	}
+
+	private void ensureOpen() throws ClosedChannelException {
+		if (!source.isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
+}
@@ -0,0 +1,373 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: DictionaryAttack.java
+ *
+ * Tries every word of a wordlist as the key of a ciphertext and keeps those
+ * whose decryptions score best by quadgram fitness. The wordlist is streamed
+ * in batches that are split across a work-stealing pool, and the ciphertext
+ * is normalized once and shared by every worker. Each word is first scored
+ * on a short prefix of the text and only scored on the whole text if that
+ * prefix looks like the language, so most wrong keys cost a hundred letters
+ * of work rather than the length of the ciphertext.
+ *
+ * Usage: DictionaryAttack [-n results] [-m model] wordlist ciphertext
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+public class DictionaryAttack {
+
+	private static final int PREFIX_LENGTH = 100;
+	private static final int BATCH_SIZE = 8192;
+	private static final int LEAF_SIZE = 512;
+
+	private final QuadgramTable table;
+	private final ForkJoinPool pool;
+	private final int maxResults;
+	private final double threshold;
+
+	/**
+	 * Constructs an attack on text in the default language keeping the ten
+	 * best keys
+	 *
+	 * @see LanguageModel#getDefault()
+	 */
+	public DictionaryAttack() {
+		this(LanguageModel.getDefault().getQuadgrams(), ForkJoinPool
+				.commonPool(), 10);
+	}
+
+	/**
+	 * Constructs an attack whose prefix threshold lies a third of the way from
+	 * the score of random letters to that expected of the language. Real text
+	 * often scores well below the expected score, as it was estimated from
+	 * the text the table was built from.
+	 *
+	 * @param table
+	 *            the quadgram table of the plaintext language
+	 * @param pool
+	 *            the pool to run the attack on
+	 * @param maxResults
+	 *            the number of best keys to keep
+	 */
+	public DictionaryAttack(QuadgramTable table, ForkJoinPool pool,
+			int maxResults) {
+		this(table, pool, maxResults, table.getRandomScore()
+				+ (table.getExpectedScore() - table.getRandomScore()) / 3);
+	}
+
+	/**
+	 * Constructs an attack
+	 *
+	 * @param table
+	 *            the quadgram table of the plaintext language
+	 * @param pool
+	 *            the pool to run the attack on
+	 * @param maxResults
+	 *            the number of best keys to keep
+	 * @param threshold
+	 *            the average score per quadgram a decrypted prefix must reach
+	 *            for the word to be scored on the whole text
+	 */
+	public DictionaryAttack(QuadgramTable table, ForkJoinPool pool,
+			int maxResults, double threshold) {
+		if (maxResults < 1) {
+			throw new IllegalArgumentException("maxResults must be positive");
+		}
+		this.table = table;
+		this.pool = pool;
+		this.maxResults = maxResults;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Tries every word of a wordlist file as the key of a ciphertext
+	 *
+	 * @param wordlist
+	 *            a UTF-8 file with one candidate key per line
+	 * @param ciphertext
+	 *            the text to decrypt
+	 * @return the best keys found, best first
+	 * @throws IOException
+	 *             if the wordlist cannot be read
+	 */
+	public ArrayList<Candidate> attack(Path wordlist, String ciphertext)
+			throws IOException {
+		byte[] letters = TextNormalizer.toIndices(ciphertext);
+		try (BufferedReader words = Files.newBufferedReader(wordlist,
+				StandardCharsets.UTF_8)) {
+			return attack(words, letters, letters.length);
+		}
+	}
+
+	/**
+	 * Tries every line read from a reader as the key of already normalized
+	 * ciphertext. Only a bounded number of batches of words are held in
+	 * memory at once, so the wordlist may be arbitrarily long.
+	 *
+	 * @param words
+	 *            a reader supplying one candidate key per line
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the ciphertext
+	 * @return the best keys found, best first
+	 * @throws IOException
+	 *             if the words cannot be read
+	 */
+	public ArrayList<Candidate> attack(BufferedReader words, byte[] letters,
+			int length) throws IOException {
+		if (length < 4) {
+			throw new IllegalArgumentException(
+					"ciphertext must contain at least four letters");
+		}
+		int maxPending = 2 * pool.getParallelism();
+		ArrayDeque<ForkJoinTask<Best>> pending = new ArrayDeque<ForkJoinTask<Best>>();
+		Best best = new Best(maxResults);
+		try {
+			String[] batch = new String[BATCH_SIZE];
+			int count = 0;
+			String word;
+			while ((word = words.readLine()) != null) {
+				batch[count++] = word;
+				if (count == BATCH_SIZE) {
+					pending.add(pool.submit(new WordTask(letters, length,
+							batch, 0, count)));
+					batch = new String[BATCH_SIZE];
+					count = 0;
+					if (pending.size() > maxPending) {
+						best.addAll(pending.poll().join());
+					}
+				}
+			}
+			if (count > 0) {
+				pending.add(pool.submit(new WordTask(letters, length, batch,
+						0, count)));
+			}
+			while (!pending.isEmpty()) {
+				best.addAll(pending.poll().join());
+			}
+		} finally {
+			for (ForkJoinTask<Best> task : pending) {
+				task.cancel(false);
+			}
+		}
+		return best.toList();
+	}
+
+	/**
+	 * Scores a range of a batch of words, splitting it in half until it is
+	 * small enough to run directly so that idle workers can steal the rest
+	 */
+	private class WordTask extends RecursiveTask<Best> {
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] letters;
+		private final int length;
+		private final String[] words;
+		private final int from;
+		private final int to;
+
+		WordTask(byte[] letters, int length, String[] words, int from, int to) {
+			this.letters = letters;
+			this.length = length;
+			this.words = words;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Best compute() {
+			if (to - from > LEAF_SIZE) {
+				int mid = (from + to) >>> 1;
+				WordTask left = new WordTask(letters, length, words, from, mid);
+				left.fork();
+				Best best = new WordTask(letters, length, words, mid, to)
+						.compute();
+				best.addAll(left.join());
+				return best;
+			}
+
+			Best best = new Best(maxResults);
+			byte[] plain = new byte[length];
+			byte[] shifts = new byte[16];
+			int prefix = Math.min(PREFIX_LENGTH, length);
+			for (int w = from; w < to; w++) {
+				String word = words[w];
+				if (word.length() > shifts.length) {
+					shifts = new byte[word.length()];
+				}
+				int keyLength = TextNormalizer.normalize(word, shifts, 0);
+				if (keyLength == 0) {
+					continue;
+				}
+				for (int j = 0; j < keyLength; j++) {
+					shifts[j] = (byte) ((26 - shifts[j]) % 26);
+				}
+
+				decrypt(shifts, keyLength, plain, 0, prefix);
+				double score = table.score(plain, 0, prefix) / (prefix - 3);
+				if (score < threshold && prefix < length) {
+					continue;
+				}
+				if (prefix < length) {
+					decrypt(shifts, keyLength, plain, prefix, length);
+					score = table.score(plain, 0, length) / (length - 3);
+				}
+				best.add(shifts, keyLength, score);
+			}
+			return best;
+		}
+
+		private void decrypt(byte[] shifts, int keyLength, byte[] plain,
+				int from, int to) {
+			int j = from % keyLength;
+			for (int i = from; i < to; i++) {
+				int v = letters[i] + shifts[j];
+				plain[i] = (byte) (v - (26 & ((25 - v) >> 31)));
+				if (++j == keyLength) {
+					j = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A key tried by the attack and the average quadgram score of the
+	 * decryption it produces
+	 */
+	public static class Candidate implements Comparable<Candidate> {
+		private final String key;
+		private final double score;
+
+		Candidate(String key, double score) {
+			this.key = key;
+			this.score = score;
+		}
+
+		/**
+		 * @return the key as upper case letters
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the average log10 probability per quadgram of the decryption
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			return Double.compare(score, other.score);
+		}
+
+		@Override
+		public String toString() {
+			return key + " (" + score + ")";
+		}
+	}
+
+	/**
+	 * The best candidates seen so far, held in a min-heap so the worst is
+	 * replaced first. Keys that differ only in case or punctuation are kept
+	 * once.
+	 */
+	private static class Best {
+		private final int capacity;
+		private final PriorityQueue<Candidate> heap = new PriorityQueue<Candidate>();
+
+		Best(int capacity) {
+			this.capacity = capacity;
+		}
+
+		void add(byte[] shifts, int keyLength, double score) {
+			if (heap.size() == capacity && score <= heap.peek().score) {
+				return;
+			}
+			char[] key = new char[keyLength];
+			for (int j = 0; j < keyLength; j++) {
+				key[j] = (char) ((26 - shifts[j]) % 26 + 'A');
+			}
+			add(new Candidate(new String(key), score));
+		}
+
+		void add(Candidate candidate) {
+			if (heap.size() == capacity
+					&& candidate.score <= heap.peek().score) {
+				return;
+			}
+			for (Candidate c : heap) {
+				if (c.key.equals(candidate.key)) {
+					return;
+				}
+			}
+			heap.add(candidate);
+			if (heap.size() > capacity) {
+				heap.poll();
+			}
+		}
+
+		void addAll(Best other) {
+			for (Candidate c : other.heap) {
+				add(c);
+			}
+		}
+
+		ArrayList<Candidate> toList() {
+			ArrayList<Candidate> list = new ArrayList<Candidate>(heap);
+			Collections.sort(list, Collections.reverseOrder());
+			return list;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int results = 10;
+		LanguageModel model = null;
+		Path wordlist = null;
+		Path ciphertext = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("-n".equals(args[i]) && i + 1 < args.length) {
+				results = Integer.parseInt(args[++i]);
+			} else if ("-m".equals(args[i]) && i + 1 < args.length) {
+				model = LanguageModel.load(Paths.get(args[++i]));
+			} else if (wordlist == null) {
+				wordlist = Paths.get(args[i]);
+			} else {
+				ciphertext = Paths.get(args[i]);
+			}
+		}
+		if (ciphertext == null) {
+			System.err.println("Usage: DictionaryAttack [-n results] "
+					+ "[-m model] wordlist ciphertext");
+			System.exit(2);
+		}
+
+		if (model == null) {
+			model = LanguageModel.getDefault();
+		}
+		String text = new String(Files.readAllBytes(ciphertext),
+				StandardCharsets.UTF_8);
+		for (Candidate candidate : new DictionaryAttack(model.getQuadgrams(),
+				ForkJoinPool.commonPool(), results).attack(wordlist, text)) {
+			System.out.println(candidate.getKey() + "\t"
+					+ candidate.getScore());
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: DocumentLetterIndex.java
+ *
+ * Counts the letters before any offset of a document without scanning it
+ * from the start. The document is divided into blocks of about BLOCK_SIZE
+ * characters, and two Fenwick trees hold the running character and letter
+ * counts of the blocks. The block holding an offset and the letters of all
+ * the blocks before it are found in one O(log n) descent of the trees, leaving
+ * at most one block of characters to count. The index does not listen to the
+ * document: whoever edits it reports each edit, so that the index can be
+ * updated from the edited range alone.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.Arrays;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+class DocumentLetterIndex {
+
+	private static final int BLOCK_SIZE = 1024;
+
+	private final Document doc;
+
+	// The number of characters and letters in each block, none of them empty
+	private int[] lengths = new int[16];
+	private int[] letters = new int[16];
+	private int blocks;
+
+	// Fenwick trees over lengths and letters, indexed from 1
+	private int[] lengthTree = new int[17];
+	private int[] letterTree = new int[17];
+
+	/*
+	 * Set by locate: the block holding the offset, the characters of that
+	 * block before the offset, and the letters of all the blocks before it
+	 */
+	private int located;
+	private int intoBlock;
+	private int lettersBeforeBlock;
+
+	/**
+	 * Indexes the whole of a document
+	 *
+	 * @param doc
+	 *            the document to index
+	 * @throws BadLocationException
+	 *             if the document cannot be read
+	 */
+	DocumentLetterIndex(Document doc) throws BadLocationException {
+		this.doc = doc;
+		addBlocks(0, doc.getLength());
+		rebuildTrees();
+	}
+
+	/**
+	 * Returns the number of letters before an offset
+	 *
+	 * @param offset
+	 *            a position in the document, from 0 to its length
+	 * @return the number of letters in the document before offset
+	 * @throws BadLocationException
+	 *             if the document cannot be read
+	 */
+	int lettersBefore(int offset) throws BadLocationException {
+		locate(offset);
+		if (intoBlock == 0) {
+			return lettersBeforeBlock;
+		}
+		return lettersBeforeBlock
+				+ countLetters(doc, offset - intoBlock, intoBlock);
+	}
+
+	/**
+	 * Updates the index after text has been inserted into the document
+	 *
+	 * @param offset
+	 *            the position of the inserted text
+	 * @param length
+	 *            the number of characters inserted
+	 * @return the number of letters inserted
+	 * @throws BadLocationException
+	 *             if the document cannot be read
+	 */
+	int insert(int offset, int length) throws BadLocationException {
+		if (length == 0) {
+			return 0;
+		}
+		int inserted = countLetters(doc, offset, length);
+		if (blocks == 0) {
+			addBlocks(offset, length);
+			rebuildTrees();
+			return inserted;
+		}
+		locate(offset);
+		int block = located;
+		int start = offset - intoBlock;
+		if (block == blocks) {
+			// The end of the document belongs to the last block
+			block--;
+			start -= lengths[block];
+		}
+		lengths[block] += length;
+		letters[block] += inserted;
+		if (lengths[block] > 2 * BLOCK_SIZE) {
+			split(block, start);
+		} else {
+			update(block, length, inserted);
+		}
+		return inserted;
+	}
+
+	/**
+	 * Updates the index before text is removed from the document
+	 *
+	 * @param offset
+	 *            the position of the text about to be removed
+	 * @param length
+	 *            the number of characters about to be removed
+	 * @return the number of letters in the text
+	 * @throws BadLocationException
+	 *             if the document cannot be read
+	 */
+	int remove(int offset, int length) throws BadLocationException {
+		if (length == 0) {
+			return 0;
+		}
+		locate(offset);
+		int block = located;
+		int position = offset;
+		int start = offset - intoBlock;
+		int end = offset + length;
+		int removed = 0;
+		boolean emptied = false;
+		while (position < end) {
+			int blockEnd = start + lengths[block];
+			int count = Math.min(end, blockEnd) - position;
+			int blockLetters = countLetters(doc, position, count);
+			lengths[block] -= count;
+			letters[block] -= blockLetters;
+			removed += blockLetters;
+			if (lengths[block] == 0) {
+				emptied = true;
+			} else {
+				update(block, -count, -blockLetters);
+			}
+			position += count;
+			start = blockEnd;
+			block++;
+		}
+		if (emptied) {
+			int kept = 0;
+			for (int i = 0; i < blocks; i++) {
+				if (lengths[i] > 0) {
+					lengths[kept] = lengths[i];
+					letters[kept++] = letters[i];
+				}
+			}
+			blocks = kept;
+			rebuildTrees();
+		}
+		return removed;
+	}
+
+	/*
+	 * Descends the trees to the block holding offset. An offset at the end of
+	 * the document locates the block after the last.
+	 */
+	private void locate(int offset) {
+		int block = 0;
+		int remaining = offset;
+		int lettersSoFar = 0;
+		int top = Integer.highestOneBit(Math.max(1, blocks));
+		for (int step = top; step > 0; step >>= 1) {
+			int next = block + step;
+			if (next <= blocks && lengthTree[next] <= remaining) {
+				block = next;
+				remaining -= lengthTree[next];
+				lettersSoFar += letterTree[next];
+			}
+		}
+		located = block;
+		intoBlock = remaining;
+		lettersBeforeBlock = lettersSoFar;
+	}
+
+	/*
+	 * Replaces an overgrown block starting at start with blocks of
+	 * BLOCK_SIZE characters
+	 */
+	private void split(int block, int start) throws BadLocationException {
+		int length = lengths[block];
+		int[] tailLengths = Arrays.copyOfRange(lengths, block + 1, blocks);
+		int[] tailLetters = Arrays.copyOfRange(letters, block + 1, blocks);
+		blocks = block;
+		addBlocks(start, length);
+		ensureCapacity(blocks + tailLengths.length);
+		System.arraycopy(tailLengths, 0, lengths, blocks, tailLengths.length);
+		System.arraycopy(tailLetters, 0, letters, blocks, tailLetters.length);
+		blocks += tailLengths.length;
+		rebuildTrees();
+	}
+
+	/*
+	 * Appends blocks counting a range of the document, leaving the trees to
+	 * be rebuilt
+	 */
+	private void addBlocks(int offset, int length) throws BadLocationException {
+		int end = offset + length;
+		for (int start = offset; start < end; start += BLOCK_SIZE) {
+			int count = Math.min(BLOCK_SIZE, end - start);
+			ensureCapacity(blocks + 1);
+			lengths[blocks] = count;
+			letters[blocks++] = countLetters(doc, start, count);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > lengths.length) {
+			int size = Math.max(capacity, lengths.length * 2);
+			lengths = Arrays.copyOf(lengths, size);
+			letters = Arrays.copyOf(letters, size);
+		}
+	}
+
+	private void rebuildTrees() {
+		if (lengthTree.length < blocks + 1) {
+			lengthTree = new int[lengths.length + 1];
+			letterTree = new int[lengths.length + 1];
+		}
+		for (int i = 1; i <= blocks; i++) {
+			lengthTree[i] = lengths[i - 1];
+			letterTree[i] = letters[i - 1];
+		}
+		for (int i = 1; i <= blocks; i++) {
+			int parent = i + (i & -i);
+			if (parent <= blocks) {
+				lengthTree[parent] += lengthTree[i];
+				letterTree[parent] += letterTree[i];
+			}
+		}
+	}
+
+	private void update(int block, int length, int letterCount) {
+		for (int i = block + 1; i <= blocks; i += i & -i) {
+			lengthTree[i] += length;
+			letterTree[i] += letterCount;
+		}
+	}
+
+	/**
+	 * Counts the letters in a range of a document without copying it
+	 *
+	 * @param doc
+	 *            the document to read
+	 * @param offset
+	 *            the position of the first character to count
+	 * @param length
+	 *            the number of characters to count
+	 * @return the number of letters in the range
+	 * @throws BadLocationException
+	 *             if the range is not within the document
+	 */
+	static int countLetters(Document doc, int offset, int length)
+			throws BadLocationException {
+		Segment segment = new Segment();
+		segment.setPartialReturn(true);
+		int count = 0;
+		int end = offset + length;
+		while (offset < end) {
+			doc.getText(offset, end - offset, segment);
+			for (int i = segment.offset; i < segment.offset + segment.count; i++) {
+				if (TextNormalizer.indexOf(segment.array[i]) >= 0) {
+					count++;
+				}
+			}
+			offset += segment.count;
+		}
+		return count;
+	}
+}
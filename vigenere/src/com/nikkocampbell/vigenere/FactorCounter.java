@@ -0,0 +1,135 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: FactorCounter.java
+ *
+ * Tallies how often each candidate key length divides the distances found by
+ * the Kasiski test. Only the lengths within a fixed range are counted, so each
+ * distance costs a handful of modulus tests rather than a full factorization.
+ */
+package com.nikkocampbell.vigenere;
+
+public class FactorCounter {
+
+	private final int minKeyLength;
+	private final int maxKeyLength;
+	// The shortest length actually counted, as no key is shorter than 1
+	private final int first;
+	private final int[] counts;
+
+	/**
+	 * Constructs a counter for the key lengths minKeyLength to maxKeyLength.
+	 * As with the original Kasiski test, any range is accepted: lengths below
+	 * 1 are never counted, and an empty range counts nothing.
+	 *
+	 * @param minKeyLength
+	 *            the smallest key length to count
+	 * @param maxKeyLength
+	 *            the largest key length to count
+	 */
+	public FactorCounter(int minKeyLength, int maxKeyLength) {
+		this.minKeyLength = minKeyLength;
+		this.maxKeyLength = maxKeyLength;
+		first = Math.max(1, minKeyLength);
+		counts = new int[Math.max(0, maxKeyLength - first + 1)];
+	}
+
+	/**
+	 * Counts each key length in range that divides a distance
+	 *
+	 * @param distance
+	 *            the distance between two occurrences of a substring
+	 */
+	public void add(int distance) {
+		add(distance, 1);
+	}
+
+	/**
+	 * Adds weight to each key length in range that divides a distance
+	 *
+	 * @param distance
+	 *            the distance between two occurrences of a substring
+	 * @param weight
+	 *            the amount to add to each dividing key length
+	 */
+	public void add(int distance, int weight) {
+		if (distance <= 0) {
+			return;
+		}
+		int max = Math.min(maxKeyLength, distance);
+		for (int length = first; length <= max; length++) {
+			if (distance % length == 0) {
+				counts[length - first] += weight;
+				// calculateFactors lists the square root of a square twice
+				if (length * length == distance) {
+					counts[length - first] += weight;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the tally for a key length
+	 *
+	 * @param keyLength
+	 *            a key length within the counted range
+	 * @return the number of distances keyLength divides, or their total weight
+	 */
+	public int getCount(int keyLength) {
+		return counts[keyLength - first];
+	}
+
+	/**
+	 * Returns the smallest key length counted
+	 *
+	 * @return the smallest key length counted
+	 */
+	public int getMinKeyLength() {
+		return minKeyLength;
+	}
+
+	/**
+	 * Returns the largest key length counted
+	 *
+	 * @return the largest key length counted
+	 */
+	public int getMaxKeyLength() {
+		return maxKeyLength;
+	}
+
+	/**
+	 * Returns the key length with the highest tally over the whole range
+	 *
+	 * @return the estimated length of the keyword
+	 * @see FactorCounter#estimateKeyLength(int, int)
+	 */
+	public int estimateKeyLength() {
+		return estimateKeyLength(minKeyLength, maxKeyLength);
+	}
+
+	/**
+	 * Returns the key length with the highest tally between min and max. Ties
+	 * go to the longer length, and min is returned if no length in the range
+	 * divides any distance.
+	 *
+	 * @param min
+	 *            the minimum length that may be returned for the key length
+	 * @param max
+	 *            the maximum length that may be returned for the key length
+	 * @return the estimated length of the keyword
+	 */
+	public int estimateKeyLength(int min, int max) {
+		int from = Math.max(min, first);
+		int to = Math.min(max, maxKeyLength);
+		int maxKey = min;
+		int maxFreq = 0;
+		for (int length = from; length <= to; length++) {
+			int freq = counts[length - first];
+			if (freq > 0 && freq >= maxFreq) {
+				maxFreq = freq;
+				maxKey = length;
+			}
+		}
+		return maxKey;
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: FileCipher.java
+ *
+ * Encrypts and decrypts whole files with the Vigenere cipher. The input file
+ * is memory mapped and divided into chunks which are processed in parallel on
+ * a ForkJoinPool. A first pass counts the letters in each chunk so that the
+ * key offset and output position of every chunk are known before the second
+ * pass shifts them. Only ASCII letters are treated as letters, as for every
+ * byte oriented path (see {@link KeyStream}).
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class FileCipher {
+
+	/**
+	 * The number of input bytes handled by a single task
+	 */
+	public static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructs a new file cipher running on the common ForkJoinPool
+	 */
+	public FileCipher() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a new file cipher running on the given pool
+	 *
+	 * @param pool
+	 *            the pool to run chunk tasks on
+	 */
+	public FileCipher(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Encrypts the contents of a file with a given keyword, writing the
+	 * ciphertext to another file. For ASCII text the output is identical to
+	 * calling {@link Vigenere#encrypt(String, String)} on the whole file;
+	 * accented letters, which encrypt folds, are dropped here instead.
+	 *
+	 * @param plaintext
+	 *            the file containing the message to encrypt
+	 * @param ciphertext
+	 *            the file to write the encrypted message to
+	 * @param keyword
+	 *            a string to use in the encryption
+	 * @return the number of letters written
+	 * @throws IOException
+	 *             if either file cannot be read or written
+	 * @throws IllegalArgumentException
+	 *             if both paths locate the same file
+	 */
+	public long encrypt(Path plaintext, Path ciphertext, String keyword)
+			throws IOException {
+		return process(plaintext, ciphertext, keyword, true);
+	}
+
+	/**
+	 * Decrypts the contents of a file with a given keyword, writing the
+	 * plaintext to another file. For ASCII text the output is identical to
+	 * calling {@link Vigenere#decrypt(String, String)} on the whole file;
+	 * accented letters, which decrypt folds, are dropped here instead.
+	 *
+	 * @param ciphertext
+	 *            the file containing the message to decrypt
+	 * @param plaintext
+	 *            the file to write the decrypted message to
+	 * @param keyword
+	 *            a string to use in the decryption
+	 * @return the number of letters written
+	 * @throws IOException
+	 *             if either file cannot be read or written
+	 * @throws IllegalArgumentException
+	 *             if both paths locate the same file
+	 */
+	public long decrypt(Path ciphertext, Path plaintext, String keyword)
+			throws IOException {
+		return process(ciphertext, plaintext, keyword, false);
+	}
+
+	private long process(Path source, Path target, String keyword,
+			boolean encrypt) throws IOException {
+		// Fail before touching the target if the keyword is unusable
+		new KeyStream(keyword, encrypt);
+		// Truncating the target would destroy the source while it is read
+		if (Files.exists(target) && Files.isSameFile(source, target)) {
+			throw new IllegalArgumentException(source
+					+ " cannot be both source and target");
+		}
+
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target,
+						StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			int chunks = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+			if (chunks == 0) {
+				return 0;
+			}
+
+			// First pass: count the letters of each chunk
+			long[] letterOffsets = new long[chunks + 1];
+			invoke(new ChunkTask(in, null, size, keyword, encrypt,
+					letterOffsets, 0, chunks));
+
+			// Prefix sum gives each chunk's position in the letter stream
+			long total = 0;
+			for (int i = 0; i < chunks; i++) {
+				long count = letterOffsets[i];
+				letterOffsets[i] = total;
+				total += count;
+			}
+			letterOffsets[chunks] = total;
+
+			// Second pass: shift each chunk into place in the output file
+			if (total > 0) {
+				out.write(ByteBuffer.wrap(new byte[1]), total - 1);
+				invoke(new ChunkTask(in, out, size, keyword, encrypt,
+						letterOffsets, 0, chunks));
+			}
+			return total;
+		}
+	}
+
+	private void invoke(ChunkTask task) throws IOException {
+		try {
+			pool.invoke(task);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Recursively splits a range of chunks in half until a single chunk
+	 * remains, then either counts its letters (when no output channel is
+	 * given) or shifts them into the output file.
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel in, out;
+		private final long size;
+		private final String keyword;
+		private final boolean encrypt;
+		private final long[] letterOffsets;
+		private final int from, to;
+
+		ChunkTask(FileChannel in, FileChannel out, long size, String keyword,
+				boolean encrypt, long[] letterOffsets, int from, int to) {
+			this.in = in;
+			this.out = out;
+			this.size = size;
+			this.keyword = keyword;
+			this.encrypt = encrypt;
+			this.letterOffsets = letterOffsets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ChunkTask(in, out, size, keyword, encrypt,
+						letterOffsets, from, mid), new ChunkTask(in, out, size,
+						keyword, encrypt, letterOffsets, mid, to));
+				return;
+			}
+			try {
+				long start = (long) from * CHUNK_SIZE;
+				int length = (int) Math.min(CHUNK_SIZE, size - start);
+				MappedByteBuffer src = in.map(MapMode.READ_ONLY, start, length);
+				if (out == null) {
+					letterOffsets[from] = countLetters(src, length);
+				} else {
+					shift(src, length);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private static long countLetters(MappedByteBuffer src, int length) {
+			long count = 0;
+			for (int i = 0; i < length; i++) {
+				if (KeyStream.letterValue(src.get(i)) >= 0) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		private void shift(MappedByteBuffer src, int length) throws IOException {
+			long outStart = letterOffsets[from];
+			int outLength = (int) (letterOffsets[from + 1] - outStart);
+			if (outLength == 0) {
+				return;
+			}
+			MappedByteBuffer dst = out.map(MapMode.READ_WRITE, outStart,
+					outLength);
+
+			// Gather the letter indices, shift them in bulk, then write back
+			byte[] letters = new byte[outLength];
+			int pos = 0;
+			for (int i = 0; i < length; i++) {
+				int letter = KeyStream.letterValue(src.get(i));
+				if (letter >= 0) {
+					letters[pos++] = (byte) letter;
+				}
+			}
+			new ShiftKernel(keyword, encrypt).apply(letters, 0, letters, 0,
+					outLength, outStart);
+			for (int i = 0; i < outLength; i++) {
+				letters[i] += 'A';
+			}
+			dst.put(letters);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: IncrementalAnalyzer.java
+ *
+ * Keeps the state of a cryptanalysis up to date as ciphertext is appended.
+ * Letter frequencies, per-period column counts, the last position of every
+ * trigram and the Kasiski divisor counts are all updated from the new text
+ * alone, so the cost of an append depends only on its length and the results
+ * are available at any time without rescanning the text. Not thread-safe.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.Arrays;
+
+public class IncrementalAnalyzer {
+
+	private final int maxKeyLength;
+	private final int[] frequencies = new int[26];
+	private final ColumnCounts columnCounts;
+	private final FactorCounter factorCounter;
+	private final int[] lastSeen = new int[TrigramIndex.TRIGRAM_COUNT];
+	private int length;
+	private int trigram;
+
+	/**
+	 * Constructs an analyzer for key lengths from 1 to maxKeyLength
+	 *
+	 * @param maxKeyLength
+	 *            the longest key length to keep statistics for
+	 */
+	public IncrementalAnalyzer(int maxKeyLength) {
+		this.maxKeyLength = maxKeyLength;
+		columnCounts = new ColumnCounts(maxKeyLength);
+		factorCounter = new FactorCounter(1, maxKeyLength);
+		Arrays.fill(lastSeen, -1);
+	}
+
+	/**
+	 * Appends ciphertext to the analysis. Letters are normalized as by
+	 * {@link TextNormalizer} and every other character is ignored.
+	 *
+	 * @param text
+	 *            the next piece of ciphertext
+	 */
+	public void append(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			int letter = TextNormalizer.indexOf(text.charAt(i));
+			if (letter >= 0) {
+				appendLetter(letter);
+			}
+		}
+	}
+
+	/**
+	 * Appends a single letter to the analysis
+	 *
+	 * @param letter
+	 *            the numeric value (0-25) of the letter
+	 */
+	public void appendLetter(int letter) {
+		frequencies[letter]++;
+		columnCounts.add(letter);
+		trigram = (trigram % (26 * 26)) * 26 + letter;
+		length++;
+		if (length >= 3) {
+			int pos = length - 3;
+			int last = lastSeen[trigram];
+			if (last >= 0) {
+				factorCounter.add(pos - last);
+			}
+			lastSeen[trigram] = pos;
+		}
+	}
+
+	/**
+	 * Returns the number of letters analyzed so far
+	 *
+	 * @return the number of letters appended
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the number of occurrences of each letter so far
+	 *
+	 * @return an integer array containing the number of occurrences of each
+	 *         letter
+	 */
+	public int[] getLetterFrequencies() {
+		return frequencies.clone();
+	}
+
+	/**
+	 * Returns the Index of Coincidence of the text so far
+	 *
+	 * @return the Index of Coincidence
+	 * @see Vigenere#calcIC(int[])
+	 */
+	public double getIC() {
+		return Vigenere.calcIC(frequencies);
+	}
+
+	/**
+	 * Estimates the key length of the text so far with the Friedman test
+	 *
+	 * @return the approximate key length
+	 * @see Vigenere#estimateKeyLength(int[])
+	 */
+	public double estimateKeyLength() {
+		return Vigenere.estimateKeyLength(frequencies);
+	}
+
+	/**
+	 * Returns the average column Index of Coincidence for a key length
+	 *
+	 * @param keyLength
+	 *            a key length between 1 and the maximum key length
+	 * @return the average Index of Coincidence of the columns
+	 */
+	public double getColumnIC(int keyLength) {
+		return columnCounts.getAverageIC(keyLength);
+	}
+
+	/**
+	 * Returns the key length profile of the text so far
+	 *
+	 * @return the profile for key lengths 1 to the maximum key length
+	 */
+	public KeyLengthProfile getProfile() {
+		return new KeyLengthProfile(columnCounts, factorCounter);
+	}
+
+	/**
+	 * Returns the result of the Kasiski test on the text so far
+	 *
+	 * @param minKeyLength
+	 *            the minimum length that may be returned for the key length
+	 * @param maxKeyLength
+	 *            the maximum length that may be returned for the key length,
+	 *            no greater than the analyzer's maximum key length
+	 * @return the estimated length of the key used to encrypt the text
+	 * @see Vigenere#kasiski(String, int, int)
+	 */
+	public int kasiski(int minKeyLength, int maxKeyLength) {
+		return factorCounter.estimateKeyLength(minKeyLength, maxKeyLength);
+	}
+
+	/**
+	 * Estimates the key of the text so far
+	 *
+	 * @param keyLength
+	 *            length of the key used to encrypt the text, no greater than
+	 *            the analyzer's maximum key length
+	 * @return an estimate of the key used to encrypt the text
+	 * @see ChiSquaredKeySolver#estimateKey(ColumnCounts, int)
+	 */
+	public KeyEstimate estimateKey(int keyLength) {
+		return LanguageModel.getDefaultKeySolver().estimateKey(columnCounts,
+				keyLength);
+	}
+
+	/**
+	 * Returns the longest key length statistics are kept for
+	 *
+	 * @return the maximum key length
+	 */
+	public int getMaxKeyLength() {
+		return maxKeyLength;
+	}
+}
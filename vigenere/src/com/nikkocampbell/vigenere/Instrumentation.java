@@ -0,0 +1,146 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: Instrumentation.java
+ *
+ * Times the operations of {@link Vigenere} and reports them to the registered
+ * {@link OperationListener}s. Each instrumented method calls begin on entry
+ * and end on exit. While no listener is registered begin returns null after a
+ * single volatile read, so instrumentation costs next to nothing when it is
+ * turned off.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.lang.management.ManagementFactory;
+
+public final class Instrumentation {
+
+	private static final OperationListener[] NONE = new OperationListener[0];
+	private static volatile OperationListener[] listeners = NONE;
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private Instrumentation() {
+	}
+
+	/**
+	 * Registers a listener to receive a report of every operation
+	 *
+	 * @param listener
+	 *            the listener to add
+	 */
+	public static synchronized void addListener(OperationListener listener) {
+		OperationListener[] current = listeners;
+		OperationListener[] added = new OperationListener[current.length + 1];
+		System.arraycopy(current, 0, added, 0, current.length);
+		added[current.length] = listener;
+		listeners = added;
+	}
+
+	/**
+	 * Removes a listener, turning instrumentation off once none remain
+	 *
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public static synchronized void removeListener(OperationListener listener) {
+		OperationListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == listener) {
+				OperationListener[] removed = new OperationListener[current.length - 1];
+				System.arraycopy(current, 0, removed, 0, i);
+				System.arraycopy(current, i + 1, removed, i, removed.length
+						- i);
+				listeners = removed.length == 0 ? NONE : removed;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if any listener is registered
+	 */
+	public static boolean isEnabled() {
+		return listeners.length > 0;
+	}
+
+	/**
+	 * Starts timing an operation
+	 *
+	 * @param operation
+	 *            the operation starting
+	 * @param inputLength
+	 *            the number of characters or letters given to the operation
+	 * @return a probe to pass to {@link #end(Probe)}, or null if no listener
+	 *         is registered
+	 */
+	static Probe begin(Operation operation, long inputLength) {
+		OperationListener[] current = listeners;
+		if (current.length == 0) {
+			return null;
+		}
+		return new Probe(current, operation, inputLength);
+	}
+
+	/**
+	 * Finishes timing an operation and reports it to the listeners that were
+	 * registered when it began
+	 *
+	 * @param probe
+	 *            the probe returned by begin, which may be null
+	 */
+	static void end(Probe probe) {
+		if (probe != null) {
+			probe.end();
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+			if (threads.isThreadAllocatedMemorySupported()) {
+				return threads;
+			}
+		}
+		return null;
+	}
+
+	private static long allocatedBytes() {
+		if (THREADS == null || !THREADS.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * The start of one operation
+	 */
+	static final class Probe {
+		private final OperationListener[] listeners;
+		private final Operation operation;
+		private final long inputLength;
+		private final long allocatedBefore;
+		private final long start;
+
+		private Probe(OperationListener[] listeners, Operation operation,
+				long inputLength) {
+			this.listeners = listeners;
+			this.operation = operation;
+			this.inputLength = inputLength;
+			allocatedBefore = allocatedBytes();
+			start = System.nanoTime();
+		}
+
+		private void end() {
+			long nanos = System.nanoTime() - start;
+			long allocated = allocatedBefore < 0 ? -1 : allocatedBytes()
+					- allocatedBefore;
+			for (OperationListener listener : listeners) {
+				listener.operationCompleted(operation, inputLength, nanos,
+						allocated);
+			}
+		}
+	}
+}
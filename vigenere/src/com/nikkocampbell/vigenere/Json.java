@@ -0,0 +1,91 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: Json.java
+ *
+ * Minimal helpers for writing JSON values, used by the headless modes of the
+ * tool to report results.
+ */
+package com.nikkocampbell.vigenere;
+
+class Json {
+
+	private Json() {
+	}
+
+	/**
+	 * Appends a string as a quoted and escaped JSON string
+	 *
+	 * @param out
+	 *            the builder to append to
+	 * @param value
+	 *            the string to append, or null
+	 */
+	static void quote(StringBuilder out, String value) {
+		if (value == null) {
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.append(String.format("\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+
+	/**
+	 * Appends a number, writing null for values JSON cannot represent
+	 *
+	 * @param out
+	 *            the builder to append to
+	 * @param value
+	 *            the number to append
+	 */
+	static void number(StringBuilder out, double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			out.append("null");
+		} else {
+			out.append(value);
+		}
+	}
+
+	/**
+	 * Returns a JSON object reporting that processing an input failed
+	 *
+	 * @param id
+	 *            the identifier of the input
+	 * @param e
+	 *            what was thrown
+	 * @return a single line JSON object with id and error fields
+	 */
+	static String error(String id, Throwable e) {
+		StringBuilder json = new StringBuilder("{\"id\":");
+		quote(json, id);
+		json.append(",\"error\":");
+		quote(json, e.toString());
+		return json.append('}').toString();
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: KeyEstimate.java
+ *
+ * An estimated key along with a confidence for each of its letters.
+ */
+package com.nikkocampbell.vigenere;
+
+public class KeyEstimate {
+
+	private final String key;
+	private final double[] confidences;
+
+	/**
+	 * Constructs a new key estimate
+	 *
+	 * @param key
+	 *            the estimated key
+	 * @param confidences
+	 *            the confidence in each letter of key, from 0 to 1
+	 */
+	public KeyEstimate(String key, double[] confidences) {
+		this.key = key;
+		this.confidences = confidences.clone();
+	}
+
+	/**
+	 * Returns the estimated key
+	 *
+	 * @return the estimated key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the confidence in a letter of the key. A value near 1 means the
+	 * chosen letter fit far better than any alternative, while a value near 0
+	 * means another letter fit almost as well.
+	 *
+	 * @param position
+	 *            the position of the letter within the key
+	 * @return the confidence in the letter, from 0 to 1
+	 */
+	public double getConfidence(int position) {
+		return confidences[position];
+	}
+
+	/**
+	 * Returns the confidence in each letter of the key
+	 *
+	 * @return an array holding the confidence in each letter of the key
+	 */
+	public double[] getConfidences() {
+		return confidences.clone();
+	}
+
+	/**
+	 * Returns the key followed by the confidence in each of its letters
+	 */
+	public String toString() {
+		StringBuilder out = new StringBuilder(key).append(": ");
+		for (int i = 0; i < confidences.length; i++) {
+			if (i > 0) {
+				out.append(", ");
+			}
+			out.append(String.format("%.2f", confidences[i]));
+		}
+		return out.toString();
+	}
+}
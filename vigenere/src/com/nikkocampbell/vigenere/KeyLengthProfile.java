@@ -0,0 +1,330 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: KeyLengthProfile.java
+ *
+ * The evidence for every candidate key length from 1 up to a maximum: the
+ * average column Index of Coincidence, and the Kasiski divisor counts of the
+ * distances between repeated trigrams. When the text is split by the true key
+ * length each column is a simple shift cipher, so its IC approaches that of
+ * English (about 0.066) while other lengths stay near random (about 0.038).
+ *
+ * The profile is computed once for all lengths and then answers questions
+ * about any window [min, max] of lengths without touching the text again.
+ * Sparse tables of the best length in every power of two sized window give
+ * the best length of any window in constant time, and prefix sums of the IC
+ * give the average of any window for the confidence. Unlike the range of a
+ * FactorCounter, a window must start at 1 or more and must not be empty,
+ * though it may reach past the maximum key length.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+public class KeyLengthProfile {
+
+	private static final double ENGLISH_IC = 0.066;
+	private static final double RANDOM_IC = 1.0 / 26;
+
+	private final int maxKeyLength;
+	private final double[] ic;
+	private final int[] kasiski;
+	private final int[] ranking;
+	private final double[] icPrefix;
+	// bestIC[j][i] is the best length by IC among i to i + 2^j - 1
+	private final int[][] bestIC;
+	private final int[][] bestKasiski;
+
+	/**
+	 * Constructs a profile from the column counts of a text alone, with no
+	 * Kasiski divisor counts
+	 *
+	 * @param counts
+	 *            the column counts of a ciphertext
+	 */
+	public KeyLengthProfile(ColumnCounts counts) {
+		this(counts, null);
+	}
+
+	/**
+	 * Constructs a profile from the column counts and the Kasiski divisor
+	 * counts of a text
+	 *
+	 * @param counts
+	 *            the column counts of a ciphertext
+	 * @param factors
+	 *            the divisor counts of the distances between repeats in the
+	 *            same ciphertext, counted from key length 1, or null if there
+	 *            are none
+	 */
+	public KeyLengthProfile(ColumnCounts counts, FactorCounter factors) {
+		if (factors != null && factors.getMinKeyLength() != 1) {
+			throw new IllegalArgumentException(
+					"factors must be counted from key length 1");
+		}
+		maxKeyLength = counts.getMaxPeriod();
+		ic = new double[maxKeyLength + 1];
+		kasiski = new int[maxKeyLength + 1];
+		icPrefix = new double[maxKeyLength + 1];
+		for (int length = 1; length <= maxKeyLength; length++) {
+			ic[length] = counts.getAverageIC(length);
+			icPrefix[length] = icPrefix[length - 1] + ic[length];
+			if (factors != null && length <= factors.getMaxKeyLength()) {
+				kasiski[length] = factors.getCount(length);
+			}
+		}
+
+		// Rank by descending IC, preferring the shorter length on ties
+		ranking = new int[maxKeyLength];
+		for (int i = 0; i < maxKeyLength; i++) {
+			int length = i + 1;
+			int j = i;
+			while (j > 0 && ic[ranking[j - 1]] < ic[length]) {
+				ranking[j] = ranking[j - 1];
+				j--;
+			}
+			ranking[j] = length;
+		}
+
+		int levels = 32 - Integer.numberOfLeadingZeros(maxKeyLength);
+		bestIC = new int[levels][];
+		bestKasiski = new int[levels][];
+		bestIC[0] = new int[maxKeyLength + 1];
+		bestKasiski[0] = new int[maxKeyLength + 1];
+		for (int length = 1; length <= maxKeyLength; length++) {
+			bestIC[0][length] = length;
+			bestKasiski[0][length] = length;
+		}
+		for (int j = 1; j < levels; j++) {
+			int half = 1 << (j - 1);
+			int last = maxKeyLength - (1 << j) + 1;
+			bestIC[j] = new int[last + 1];
+			bestKasiski[j] = new int[last + 1];
+			for (int i = 1; i <= last; i++) {
+				bestIC[j][i] = betterIC(bestIC[j - 1][i], bestIC[j - 1][i
+						+ half]);
+				bestKasiski[j][i] = betterKasiski(bestKasiski[j - 1][i],
+						bestKasiski[j - 1][i + half]);
+			}
+		}
+	}
+
+	/**
+	 * Computes the profile of a text in a single pass
+	 *
+	 * @param text
+	 *            a string encrypted with a Vigenere cipher
+	 * @param maxKeyLength
+	 *            the longest key length to consider
+	 * @return the profile of text for the key lengths 1 to maxKeyLength
+	 */
+	public static KeyLengthProfile analyze(String text, int maxKeyLength) {
+		byte[] letters = TextNormalizer.toIndices(text);
+		ColumnCounts counts = new ColumnCounts(maxKeyLength);
+		counts.addAll(letters, 0, letters.length);
+		return new KeyLengthProfile(counts, Vigenere.countTrigramDistances(
+				letters, letters.length, 1, maxKeyLength));
+	}
+
+	/**
+	 * Returns the average column Index of Coincidence for a key length
+	 *
+	 * @param keyLength
+	 *            a key length between 1 and the maximum key length
+	 * @return the average Index of Coincidence of the columns
+	 */
+	public double getIC(int keyLength) {
+		return ic[keyLength];
+	}
+
+	/**
+	 * Returns the Kasiski divisor count for a key length
+	 *
+	 * @param keyLength
+	 *            a key length between 1 and the maximum key length
+	 * @return the number of distances between repeated trigrams that
+	 *         keyLength divides
+	 */
+	public int getKasiskiCount(int keyLength) {
+		return kasiski[keyLength];
+	}
+
+	/**
+	 * Returns the key lengths ordered from most to least likely
+	 *
+	 * @return the key lengths 1 to the maximum, ordered by descending IC
+	 */
+	public int[] getRanking() {
+		return ranking.clone();
+	}
+
+	/**
+	 * Returns the most likely key lengths within a window, taking each from
+	 * the sparse tables rather than sorting the window
+	 *
+	 * @param min
+	 *            the shortest key length to consider
+	 * @param max
+	 *            the longest key length to consider
+	 * @param k
+	 *            the most key lengths to return
+	 * @return up to k key lengths between min and max, ordered by descending
+	 *         IC
+	 * @throws IllegalArgumentException
+	 *             if min is less than 1 or max is less than min
+	 */
+	public int[] getRanking(int min, int max, int k) {
+		int to = clamp(min, max);
+		int[] top = new int[Math.max(0, Math.min(k, to - min + 1))];
+		if (top.length == 0) {
+			return top;
+		}
+
+		// Each window's best length splits it into two smaller windows
+		PriorityQueue<int[]> windows = new PriorityQueue<int[]>(
+				2 * top.length, new Comparator<int[]>() {
+					@Override
+					public int compare(int[] a, int[] b) {
+						return a[2] == betterIC(a[2], b[2]) ? -1 : 1;
+					}
+				});
+		windows.add(new int[] { min, to, bestIC(min, to) });
+		for (int i = 0; i < top.length; i++) {
+			int[] window = windows.poll();
+			int best = window[2];
+			top[i] = best;
+			if (best > window[0]) {
+				windows.add(new int[] { window[0], best - 1,
+						bestIC(window[0], best - 1) });
+			}
+			if (best < window[1]) {
+				windows.add(new int[] { best + 1, window[1],
+						bestIC(best + 1, window[1]) });
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the most likely key length
+	 *
+	 * @return the key length with the highest average column IC
+	 */
+	public int getBestKeyLength() {
+		return ranking[0];
+	}
+
+	/**
+	 * Returns the most likely key length within a window. Ties go to the
+	 * shorter length, and min is returned if the window lies beyond the
+	 * maximum key length.
+	 *
+	 * @param min
+	 *            the shortest key length to consider
+	 * @param max
+	 *            the longest key length to consider
+	 * @return the key length between min and max with the highest average
+	 *         column IC
+	 * @throws IllegalArgumentException
+	 *             if min is less than 1 or max is less than min
+	 */
+	public int getBestKeyLength(int min, int max) {
+		int to = clamp(min, max);
+		return min > to ? min : bestIC(min, to);
+	}
+
+	/**
+	 * Returns the result of the Kasiski test within a window. Ties go to the
+	 * longer length, and min is returned if no length in the window divides
+	 * any distance, as with FactorCounter.
+	 *
+	 * @param min
+	 *            the minimum length that may be returned for the key length
+	 * @param max
+	 *            the maximum length that may be returned for the key length
+	 * @return the key length between min and max dividing the most distances
+	 * @throws IllegalArgumentException
+	 *             if min is less than 1 or max is less than min
+	 * @see FactorCounter#estimateKeyLength(int, int)
+	 */
+	public int getKasiskiKeyLength(int min, int max) {
+		int to = clamp(min, max);
+		if (min > to) {
+			return min;
+		}
+		int j = 31 - Integer.numberOfLeadingZeros(to - min + 1);
+		int best = betterKasiski(bestKasiski[j][min], bestKasiski[j][to
+				- (1 << j) + 1]);
+		return kasiski[best] > 0 ? best : min;
+	}
+
+	/**
+	 * Returns how clearly the best key length within a window stands out,
+	 * as the amount its IC exceeds the average of the other lengths in the
+	 * window, relative to the gap between English and random text. A window
+	 * of one length is compared with random text.
+	 *
+	 * @param min
+	 *            the shortest key length to consider
+	 * @param max
+	 *            the longest key length to consider
+	 * @return a confidence between 0 and 1 in the best key length of the
+	 *         window
+	 * @throws IllegalArgumentException
+	 *             if min is less than 1 or max is less than min
+	 * @see #getBestKeyLength(int, int)
+	 */
+	public double getConfidence(int min, int max) {
+		int to = clamp(min, max);
+		if (min > to) {
+			return 0;
+		}
+		int best = bestIC(min, to);
+		int others = to - min;
+		double othersIC = others == 0 ? RANDOM_IC : (icPrefix[to]
+				- icPrefix[min - 1] - ic[best])
+				/ others;
+		double confidence = (ic[best] - othersIC) / (ENGLISH_IC - RANDOM_IC);
+		return Math.max(0, Math.min(1, confidence));
+	}
+
+	/**
+	 * Returns the longest key length in the profile
+	 *
+	 * @return the longest key length considered
+	 */
+	public int getMaxKeyLength() {
+		return maxKeyLength;
+	}
+
+	/*
+	 * Checks a window and returns its upper end cut to the maximum key length
+	 */
+	private int clamp(int min, int max) {
+		if (min < 1 || max < min) {
+			throw new IllegalArgumentException("invalid key length range "
+					+ min + "-" + max);
+		}
+		return Math.min(max, maxKeyLength);
+	}
+
+	private int bestIC(int from, int to) {
+		int j = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+		return betterIC(bestIC[j][from], bestIC[j][to - (1 << j) + 1]);
+	}
+
+	private int betterIC(int a, int b) {
+		if (ic[a] != ic[b]) {
+			return ic[a] > ic[b] ? a : b;
+		}
+		return Math.min(a, b);
+	}
+
+	private int betterKasiski(int a, int b) {
+		if (kasiski[a] != kasiski[b]) {
+			return kasiski[a] > kasiski[b] ? a : b;
+		}
+		return Math.max(a, b);
+	}
+}
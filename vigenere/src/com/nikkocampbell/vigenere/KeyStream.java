@@ -0,0 +1,176 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: KeyStream.java
+ *
+ * Tracks the current position within a keyword while a message is processed
+ * in pieces, so that encryption and decryption can be split across buffers
+ * without losing the key phase.
+ *
+ * Characters are letters exactly when {@link TextNormalizer} says so, which
+ * folds accented letters to their base letter. Bytes have no such folding:
+ * the byte methods are ASCII only, treating the letters A-Z in either case as
+ * letters and every other byte, including each byte of a multi-byte UTF-8
+ * character, as a non-letter.
+ */
+package com.nikkocampbell.vigenere;
+
+class KeyStream {
+
+	private final int[] shifts;
+	private int phase;
+
+	/**
+	 * Constructs a new key stream starting at the first letter of keyword
+	 *
+	 * @param keyword
+	 *            the keyword used to encrypt or decrypt
+	 * @param encrypt
+	 *            true to shift letters forward (encryption), false to shift
+	 *            them backward (decryption)
+	 */
+	KeyStream(String keyword, boolean encrypt) {
+		this(keyword, encrypt, 0);
+	}
+
+	/**
+	 * Constructs a new key stream positioned as if offset letters had already
+	 * been processed
+	 *
+	 * @param keyword
+	 *            the keyword used to encrypt or decrypt
+	 * @param encrypt
+	 *            true to shift letters forward (encryption), false to shift
+	 *            them backward (decryption)
+	 * @param offset
+	 *            the number of letters preceding the first letter processed
+	 */
+	KeyStream(String keyword, boolean encrypt, long offset) {
+		String key = TextNormalizer.format(keyword);
+		if (key.length() == 0) {
+			throw new IllegalArgumentException(
+					"keyword must contain at least one letter");
+		}
+		shifts = new int[key.length()];
+		for (int i = 0; i < shifts.length; i++) {
+			int keyChar = key.charAt(i) - 'A';
+			shifts[i] = encrypt ? keyChar : (26 - keyChar) % 26;
+		}
+		phase = (int) (offset % shifts.length);
+	}
+
+	/**
+	 * Moves the key stream to the position it would have after offset letters
+	 *
+	 * @param offset
+	 *            the number of letters preceding the next letter processed
+	 */
+	void seek(long offset) {
+		phase = (int) (offset % shifts.length);
+	}
+
+	/**
+	 * Shifts a single letter by the current key letter and advances the key
+	 *
+	 * @param letter
+	 *            the numeric value (0-25) of the letter to shift
+	 * @return the numeric value (0-25) of the shifted letter
+	 */
+	int next(int letter) {
+		int shifted = letter + shifts[phase];
+		if (++phase == shifts.length) {
+			phase = 0;
+		}
+		return shifted >= 26 ? shifted - 26 : shifted;
+	}
+
+	/**
+	 * Shifts the letters of a byte buffer in place. Non-letter bytes are
+	 * dropped and the remaining letters are compacted to the start of the
+	 * range as upper case, matching the output of {@link Vigenere#format}
+	 * followed by encryption or decryption. Only ASCII letters are treated as
+	 * letters.
+	 *
+	 * @param buf
+	 *            the buffer holding the bytes to transform
+	 * @param off
+	 *            the offset of the first byte to transform
+	 * @param len
+	 *            the number of bytes to transform
+	 * @return the number of letters written back starting at off
+	 */
+	int transform(byte[] buf, int off, int len) {
+		int out = off;
+		for (int i = off; i < off + len; i++) {
+			int letter = letterValue(buf[i]);
+			if (letter >= 0) {
+				buf[out++] = (byte) (next(letter) + 'A');
+			}
+		}
+		return out - off;
+	}
+
+	/**
+	 * Shifts the letters of a byte buffer in place, keeping their case and
+	 * leaving every other byte where it is. Only ASCII letters are shifted and
+	 * advance the key.
+	 *
+	 * @param buf
+	 *            the buffer holding the bytes to transform
+	 * @param off
+	 *            the offset of the first byte to transform
+	 * @param len
+	 *            the number of bytes to transform
+	 */
+	void transformPreservingFormat(byte[] buf, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			int b = buf[i];
+			if (b >= 'A' && b <= 'Z') {
+				buf[i] = (byte) (next(b - 'A') + 'A');
+			} else if (b >= 'a' && b <= 'z') {
+				buf[i] = (byte) (next(b - 'a') + 'a');
+			}
+		}
+	}
+
+	/**
+	 * Shifts the letters of a char buffer in place, keeping their case and
+	 * leaving every other character where it is. Accented letters are folded
+	 * as by {@link TextNormalizer}, so the shifted letter loses its accent.
+	 *
+	 * @param buf
+	 *            the buffer holding the characters to transform
+	 * @param off
+	 *            the offset of the first character to transform
+	 * @param len
+	 *            the number of characters to transform
+	 */
+	void transformPreservingFormat(char[] buf, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			char c = buf[i];
+			int letter = TextNormalizer.indexOf(c);
+			if (letter >= 0) {
+				boolean upper = c < 0x80 ? c <= 'Z' : Character.isUpperCase(c);
+				buf[i] = (char) (next(letter) + (upper ? 'A' : 'a'));
+			}
+		}
+	}
+
+	/**
+	 * Returns the numeric value of an ASCII letter, deciding which bytes are
+	 * letters for every byte oriented path: the byte methods here,
+	 * {@link FileCipher} and {@link DecryptingChannel}
+	 *
+	 * @param b
+	 *            a byte of text
+	 * @return 0-25 for the letters A-Z in either case, -1 otherwise
+	 */
+	static int letterValue(int b) {
+		if (b >= 'A' && b <= 'Z') {
+			return b - 'A';
+		} else if (b >= 'a' && b <= 'z') {
+			return b - 'a';
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,387 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: LanguageModel.java
+ *
+ * The log10 probabilities of every n-gram of a language from single letters
+ * up to quadgrams. Key estimation takes its letter frequencies from the model
+ * and fitness scoring its quadgram table, so the tool can attack text in any
+ * language a model has been built for with {@link LanguageModelBuilder}.
+ *
+ * Models are stored in a compact binary file:
+ *
+ * <pre>
+ * "VGLM"           magic
+ * int              format version, 1
+ * int              highest order, 4
+ * int              length of the name in bytes
+ * byte[]           the name in UTF-8, padded with zeros to a multiple of 4
+ * float[26^n]      log10 probabilities of the n-grams, for n = 1 to 4
+ * </pre>
+ *
+ * Numbers are little-endian, the native order of common hardware, so that
+ * reading a float needs no byte swapping. A file is loaded by mapping it into
+ * memory and reading the tables in place: loading costs the same whatever the
+ * size of the tables, only the pages actually used are read from disk, and
+ * every JVM using the same file shares those pages.
+ *
+ * The English model bundled with the tool estimates keys with the standard
+ * letter frequencies of {@link ChiSquaredKeySolver#ENGLISH} rather than those
+ * counted from its corpus, so that it agrees with the rest of the tool.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class LanguageModel {
+
+	/**
+	 * The longest n-gram in a model
+	 */
+	public static final int MAX_ORDER = 4;
+
+	/**
+	 * The system property naming a model file to use instead of English
+	 */
+	public static final String MODEL_PROPERTY = "vigenere.model";
+
+	private static final byte[] MAGIC = { 'V', 'G', 'L', 'M' };
+	private static final int VERSION = 1;
+
+	private static volatile LanguageModel defaultModel;
+
+	private final String name;
+	// tables[n] holds the log probabilities of the n-grams
+	private final FloatBuffer[] tables = new FloatBuffer[MAX_ORDER + 1];
+	private final QuadgramTable quadgrams;
+	private final ChiSquaredKeySolver keySolver;
+
+	/**
+	 * Constructs a model over tables of log probabilities
+	 *
+	 * @param name
+	 *            the name of the language
+	 * @param tables
+	 *            the table of each order from 1 to MAX_ORDER, at index order -
+	 *            1, each holding 26^order log10 probabilities
+	 */
+	LanguageModel(String name, FloatBuffer[] tables) {
+		if (tables.length != MAX_ORDER) {
+			throw new IllegalArgumentException("expected " + MAX_ORDER
+					+ " tables");
+		}
+		this.name = name;
+		for (int order = 1; order <= MAX_ORDER; order++) {
+			FloatBuffer table = tables[order - 1].slice();
+			if (table.remaining() != tableSize(order)) {
+				throw new IllegalArgumentException("expected "
+						+ tableSize(order) + " probabilities of order "
+						+ order);
+			}
+			this.tables[order] = table;
+		}
+		quadgrams = new QuadgramTable(this.tables[4]);
+		keySolver = new ChiSquaredKeySolver(getLetterFrequencies());
+	}
+
+	/*
+	 * Copies a model, replacing its key solver
+	 */
+	private LanguageModel(LanguageModel model, ChiSquaredKeySolver keySolver) {
+		name = model.name;
+		System.arraycopy(model.tables, 0, tables, 0, tables.length);
+		quadgrams = model.quadgrams;
+		this.keySolver = keySolver;
+	}
+
+	/**
+	 * Loads a model by mapping its file into memory
+	 *
+	 * @param file
+	 *            a model file written by {@link #write(Path)}
+	 * @return the model stored in file
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid model
+	 */
+	public static LanguageModel load(Path file) throws IOException {
+		MappedByteBuffer map;
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+					.size());
+		}
+		map.order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			map.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException(file + " is not a language model");
+			}
+			int version = map.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has unsupported version "
+						+ version);
+			}
+			int maxOrder = map.getInt();
+			if (maxOrder != MAX_ORDER) {
+				throw new IOException(file + " has unsupported order "
+						+ maxOrder);
+			}
+			byte[] nameBytes = new byte[map.getInt()];
+			map.get(nameBytes);
+			int offset = padded(map.position());
+
+			FloatBuffer[] tables = new FloatBuffer[MAX_ORDER];
+			for (int order = 1; order <= MAX_ORDER; order++) {
+				int bytes = tableSize(order) * 4;
+				tables[order - 1] = map.slice(offset, bytes).order(
+						ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+				offset += bytes;
+			}
+			if (offset != map.limit()) {
+				throw new IOException(file + " has the wrong length");
+			}
+			return new LanguageModel(new String(nameBytes,
+					StandardCharsets.UTF_8), tables);
+		} catch (RuntimeException e) {
+			// A negative name length or a short file
+			throw new IOException(file + " is not a valid language model", e);
+		}
+	}
+
+	/**
+	 * Writes the model to a file in the binary format
+	 *
+	 * @param file
+	 *            the file to create or replace
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(Path file) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer header = ByteBuffer.allocate(padded(16 + nameBytes.length))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC).putInt(VERSION).putInt(MAX_ORDER).putInt(
+				nameBytes.length).put(nameBytes);
+		header.position(header.capacity()).flip();
+
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, header);
+			ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(
+					ByteOrder.LITTLE_ENDIAN);
+			for (int order = 1; order <= MAX_ORDER; order++) {
+				FloatBuffer table = tables[order].duplicate();
+				while (table.hasRemaining()) {
+					chunk.clear();
+					while (table.hasRemaining() && chunk.hasRemaining()) {
+						chunk.putFloat(table.get());
+					}
+					chunk.flip();
+					writeFully(channel, chunk);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the model built from the English text bundled with the tool
+	 *
+	 * @return the English model
+	 */
+	public static LanguageModel english() {
+		return EnglishHolder.MODEL;
+	}
+
+	/**
+	 * Returns the model named by the {@value #MODEL_PROPERTY} system
+	 * property, or the English model if it is not set. A model that fails to
+	 * load is not remembered, so the next call tries again.
+	 *
+	 * @return the model used when none is given
+	 * @throws UncheckedIOException
+	 *             if the named model cannot be loaded
+	 */
+	public static LanguageModel getDefault() {
+		LanguageModel model = defaultModel;
+		if (model == null) {
+			synchronized (LanguageModel.class) {
+				model = defaultModel;
+				if (model == null) {
+					model = loadDefault();
+					defaultModel = model;
+				}
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Returns the solver used to estimate keys when none is given. Unless a
+	 * model is named by the {@value #MODEL_PROPERTY} system property this is
+	 * {@link ChiSquaredKeySolver#ENGLISH}, and no model is loaded.
+	 *
+	 * @return the key solver of the default model
+	 * @throws UncheckedIOException
+	 *             if the named model cannot be loaded
+	 */
+	public static ChiSquaredKeySolver getDefaultKeySolver() {
+		if (System.getProperty(MODEL_PROPERTY) == null) {
+			return ChiSquaredKeySolver.ENGLISH;
+		}
+		return getDefault().getKeySolver();
+	}
+
+	/**
+	 * @return the name of the language
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the log probability of an n-gram
+	 *
+	 * @param order
+	 *            the length of the n-gram, from 1 to MAX_ORDER
+	 * @param code
+	 *            the n-gram packed as a base 26 number of its letter indices
+	 * @return the log10 probability of the n-gram
+	 */
+	public float getLogProbability(int order, int code) {
+		return tables[order].get(code);
+	}
+
+	/**
+	 * Returns the relative frequency of each letter
+	 *
+	 * @return the probability of each letter A-Z
+	 */
+	public double[] getLetterFrequencies() {
+		double[] frequencies = new double[26];
+		for (int letter = 0; letter < 26; letter++) {
+			frequencies[letter] = Math.pow(10, tables[1].get(letter));
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Scores a range of normalized text by the sum of the log probabilities
+	 * of its n-grams of one order. Shorter orders suit shorter texts.
+	 *
+	 * @param order
+	 *            the length of the n-grams, from 1 to MAX_ORDER
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param off
+	 *            the position of the first letter
+	 * @param len
+	 *            the number of letters to score
+	 * @return the total log10 probability of the n-grams in the range
+	 */
+	public double score(int order, byte[] letters, int off, int len) {
+		FloatBuffer table = tables[order];
+		int modulus = tableSize(order - 1);
+		double total = 0;
+		int code = 0;
+		for (int i = 0; i < len; i++) {
+			code = (code % modulus) * 26 + letters[off + i];
+			if (i + 1 >= order) {
+				total += table.get(code);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return the quadgram table of the model, for fitness scoring
+	 */
+	public QuadgramTable getQuadgrams() {
+		return quadgrams;
+	}
+
+	/**
+	 * @return a solver estimating keys by the letter frequencies of the model
+	 */
+	public ChiSquaredKeySolver getKeySolver() {
+		return keySolver;
+	}
+
+	/**
+	 * Returns the number of n-grams of an order
+	 *
+	 * @param order
+	 *            the length of the n-grams
+	 * @return 26 to the power of order
+	 */
+	static int tableSize(int order) {
+		int size = 1;
+		for (int i = 0; i < order; i++) {
+			size *= 26;
+		}
+		return size;
+	}
+
+	private static int padded(int length) {
+		return (length + 3) & ~3;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static LanguageModel loadDefault() {
+		String file = System.getProperty(MODEL_PROPERTY);
+		if (file == null) {
+			return english();
+		}
+		try {
+			return load(Paths.get(file));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Builds the English model on first use only
+	 */
+	private static class EnglishHolder {
+		static final LanguageModel MODEL = load();
+
+		private static LanguageModel load() {
+			InputStream in = LanguageModel.class
+					.getResourceAsStream("english.txt");
+			if (in == null) {
+				throw new IllegalStateException("english.txt not found");
+			}
+			try (Reader reader = new InputStreamReader(in,
+					StandardCharsets.UTF_8)) {
+				LanguageModelBuilder builder = new LanguageModelBuilder();
+				builder.add(reader);
+				return new LanguageModel(builder.build("English"),
+						ChiSquaredKeySolver.ENGLISH);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: LanguageModelBuilder.java
+ *
+ * Builds a {@link LanguageModel} by counting the n-grams of one or more
+ * corpora of a language. Letters are normalized as by {@link TextNormalizer}
+ * and everything else is skipped, so n-grams run across spaces and
+ * punctuation just as they do in normalized ciphertext. Run from the command
+ * line it writes the model to a file for {@link LanguageModel#load(Path)}.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LanguageModelBuilder {
+
+	// counts[n] holds the count of each n-gram
+	private final long[][] counts = new long[LanguageModel.MAX_ORDER + 1][];
+	private final long[] totals = new long[LanguageModel.MAX_ORDER + 1];
+
+	/**
+	 * Constructs a builder with no n-grams counted
+	 */
+	public LanguageModelBuilder() {
+		for (int order = 1; order <= LanguageModel.MAX_ORDER; order++) {
+			counts[order] = new long[LanguageModel.tableSize(order)];
+		}
+	}
+
+	/**
+	 * Counts the n-grams of a corpus. N-grams do not span two corpora.
+	 *
+	 * @param corpus
+	 *            a reader supplying text in the language
+	 * @throws IOException
+	 *             if the corpus cannot be read
+	 */
+	public void add(Reader corpus) throws IOException {
+		char[] buf = new char[8192];
+		int[] codes = new int[LanguageModel.MAX_ORDER + 1];
+		int[] moduli = new int[LanguageModel.MAX_ORDER + 1];
+		for (int order = 1; order <= LanguageModel.MAX_ORDER; order++) {
+			moduli[order] = LanguageModel.tableSize(order - 1);
+		}
+		long run = 0;
+		int n;
+		while ((n = corpus.read(buf)) != -1) {
+			for (int i = 0; i < n; i++) {
+				int letter = TextNormalizer.indexOf(buf[i]);
+				if (letter < 0) {
+					continue;
+				}
+				run++;
+				for (int order = 1; order <= LanguageModel.MAX_ORDER; order++) {
+					int code = (codes[order] % moduli[order]) * 26 + letter;
+					codes[order] = code;
+					if (run >= order) {
+						counts[order][code]++;
+						totals[order]++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a model from the n-grams counted so far. N-grams that do not
+	 * occur are given a small floor probability rather than zero.
+	 *
+	 * @param name
+	 *            the name of the language
+	 * @return the model of the counted corpora
+	 */
+	public LanguageModel build(String name) {
+		if (totals[LanguageModel.MAX_ORDER] == 0) {
+			throw new IllegalArgumentException("corpus contains no "
+					+ LanguageModel.MAX_ORDER + "-grams");
+		}
+		FloatBuffer[] tables = new FloatBuffer[LanguageModel.MAX_ORDER];
+		for (int order = 1; order <= LanguageModel.MAX_ORDER; order++) {
+			long[] count = counts[order];
+			long total = totals[order];
+			// Direct like the tables of a loaded model, which score fastest
+			FloatBuffer logProbabilities = ByteBuffer.allocateDirect(
+					count.length * 4).order(ByteOrder.nativeOrder())
+					.asFloatBuffer();
+			float floor = (float) Math.log10(0.01 / total);
+			for (int i = 0; i < count.length; i++) {
+				logProbabilities.put(i, count[i] == 0 ? floor : (float) Math
+						.log10((double) count[i] / total));
+			}
+			tables[order - 1] = logProbabilities;
+		}
+		return new LanguageModel(name, tables);
+	}
+
+	public static void main(String[] args) throws Exception {
+		String name = null;
+		Path output = null;
+		List<Path> corpora = new ArrayList<Path>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-n".equals(args[i]) && i + 1 < args.length) {
+				name = args[++i];
+			} else if (output == null) {
+				output = Paths.get(args[i]);
+			} else {
+				corpora.add(Paths.get(args[i]));
+			}
+		}
+		if (corpora.isEmpty()) {
+			System.err.println("Usage: LanguageModelBuilder [-n name] "
+					+ "model corpus...");
+			System.exit(2);
+		}
+
+		LanguageModelBuilder builder = new LanguageModelBuilder();
+		for (Path corpus : corpora) {
+			try (BufferedReader reader = Files.newBufferedReader(corpus,
+					StandardCharsets.UTF_8)) {
+				builder.add(reader);
+			}
+		}
+		if (name == null) {
+			name = corpora.get(0).getFileName().toString();
+		}
+		builder.build(name).write(output);
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: LargeTextPane.java
+ *
+ * A scroll pane around a text area that can also hold text too large for the
+ * area to lay out quickly. Such text is shown in a {@link PagedTextView}
+ * instead, and is only moved into the text area when the user chooses to edit
+ * it, so that a multi-megabyte result does not stall the user interface.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+
+public class LargeTextPane extends JScrollPane {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The length above which text is shown in the paged view
+	 */
+	public static final int LARGE_TEXT = 256 * 1024;
+
+	private final JTextArea area;
+	private final PagedTextView view;
+	// The text shown in the paged view, or null while the area is shown
+	private String large;
+
+	/**
+	 * Constructs a pane showing a text area
+	 *
+	 * @param area
+	 *            the text area to show and edit text in
+	 */
+	public LargeTextPane(JTextArea area) {
+		super(area);
+		this.area = area;
+		view = new PagedTextView(area.getRows(), area.getColumns());
+		view.getComponentPopupMenu().add(new AbstractAction("Edit") {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				edit();
+			}
+		});
+	}
+
+	/**
+	 * Shows a text, in the paged view if it is longer than
+	 * {@link #LARGE_TEXT}
+	 *
+	 * @param text
+	 *            the text to show
+	 */
+	public void setText(String text) {
+		if (text.length() <= LARGE_TEXT) {
+			large = null;
+			area.setText(text);
+			setViewportView(area);
+			return;
+		}
+		large = text;
+		area.setText("");
+		view.setText(text);
+		setViewportView(view);
+	}
+
+	/**
+	 * @return the text shown, whichever view it is in
+	 */
+	public String getText() {
+		return large != null ? large : area.getText();
+	}
+
+	/**
+	 * Moves text shown in the paged view into the text area, so that it can
+	 * be edited. Does nothing if the text area is already shown.
+	 */
+	public void edit() {
+		if (large == null) {
+			return;
+		}
+		String text = large;
+		large = null;
+		view.setText("");
+		area.setText(text);
+		area.setCaretPosition(0);
+		setViewportView(area);
+		area.requestFocusInWindow();
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: LiveCipher.java
+ *
+ * Keeps one document the format preserving encryption (or decryption) of
+ * another as the user types. Format preserving output has a character for
+ * every character of the input, so each edit is mirrored at the same
+ * position: only the inserted text is encrypted, and a deletion removes the
+ * same range from the other document. The letters after an edit need
+ * re-encrypting only when the number of letters added or removed is not a
+ * multiple of the key length, since only then is their key phase changed.
+ * That work is deferred until the end of the event, so that replacing a
+ * selection (a removal followed by an insertion of the same number of
+ * letters) touches nothing but the replaced characters. The key phase at an
+ * edit comes from a {@link DocumentLetterIndex} of the target, whose letters
+ * are at the same positions as the source's, so no edit rescans the text
+ * before it.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+class LiveCipher implements DocumentListener {
+
+	private final Document source;
+	private final AbstractDocument target;
+	private final String keyword;
+	private final boolean encrypt;
+	private final int keyLength;
+	private DocumentLetterIndex index;
+
+	/*
+	 * The points after which the target's letters are shifted by the wrong
+	 * key letters, with the change in letter count behind each one
+	 */
+	private final List<PhaseShift> shifts = new ArrayList<PhaseShift>();
+	private boolean flushScheduled;
+
+	/**
+	 * Constructs a live cipher, which does nothing until started
+	 *
+	 * @param source
+	 *            the document the user edits
+	 * @param target
+	 *            the document to hold the result
+	 * @param keyword
+	 *            a string to use in the encryption or decryption
+	 * @param encrypt
+	 *            true to encrypt source into target, false to decrypt it
+	 */
+	LiveCipher(Document source, AbstractDocument target, String keyword,
+			boolean encrypt) {
+		this.source = source;
+		this.target = target;
+		this.keyword = keyword;
+		this.encrypt = encrypt;
+		// Throws for a keyword without letters before anything is changed
+		new KeyStream(keyword, encrypt);
+		keyLength = TextNormalizer.format(keyword).length();
+	}
+
+	/**
+	 * Replaces the target with the transformation of the whole source and
+	 * starts following edits to the source
+	 */
+	void start() {
+		try {
+			String text = source.getText(0, source.getLength());
+			target.replace(0, target.getLength(), transform(text, 0), null);
+			index = new DocumentLetterIndex(target);
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+		source.addDocumentListener(this);
+	}
+
+	/**
+	 * Stops following edits to the source
+	 */
+	void stop() {
+		source.removeDocumentListener(this);
+		shifts.clear();
+		index = null;
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		int offset = e.getOffset();
+		int length = e.getLength();
+		try {
+			String inserted = transform(source.getText(offset, length),
+					index.lettersBefore(offset));
+			target.insertString(offset, inserted, null);
+			int insertedLetters = index.insert(offset, length);
+			moveShifts(offset, length);
+			// The inserted text is already right, even inside a stretch
+			// that is not, so the shift so far is undone over it
+			int before = shiftBefore(offset);
+			addShift(offset, -before);
+			addShift(offset + length, before + insertedLetters);
+		} catch (BadLocationException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		int offset = e.getOffset();
+		int length = e.getLength();
+		try {
+			// The target has a letter wherever the source had one
+			int removedLetters = index.remove(offset, length);
+			target.remove(offset, length);
+			moveShifts(offset, -length);
+			addShift(offset, -removedLetters);
+		} catch (BadLocationException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		// Attribute changes do not affect the text
+	}
+
+	private String transform(String text, long lettersBefore) {
+		char[] chars = text.toCharArray();
+		new KeyStream(keyword, encrypt, lettersBefore)
+				.transformPreservingFormat(chars, 0, chars.length);
+		return new String(chars);
+	}
+
+	/*
+	 * Moves the recorded shifts past an edit at offset that changed the
+	 * document length by delta
+	 */
+	private void moveShifts(int offset, int delta) {
+		for (PhaseShift shift : shifts) {
+			if (delta > 0 ? shift.position >= offset
+					: shift.position > offset) {
+				shift.position = Math.max(offset, shift.position + delta);
+			}
+		}
+	}
+
+	private int shiftBefore(int position) {
+		int sum = 0;
+		for (PhaseShift shift : shifts) {
+			if (shift.position <= position) {
+				sum += shift.letters;
+			}
+		}
+		return sum;
+	}
+
+	private void addShift(int position, int letters) {
+		if (letters % keyLength == 0) {
+			return;
+		}
+		shifts.add(new PhaseShift(position, letters));
+		if (!flushScheduled) {
+			flushScheduled = true;
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					flushScheduled = false;
+					flush();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Re-encrypts the stretches of the target whose letters are left with a
+	 * net phase shift that is not a multiple of the key length
+	 */
+	private void flush() {
+		Collections.sort(shifts, new Comparator<PhaseShift>() {
+			@Override
+			public int compare(PhaseShift a, PhaseShift b) {
+				return Integer.compare(a.position, b.position);
+			}
+		});
+		try {
+			int length = source.getLength();
+			int net = 0;
+			for (int i = 0; i < shifts.size(); i++) {
+				net += shifts.get(i).letters;
+				int from = Math.min(length, shifts.get(i).position);
+				int to = i + 1 < shifts.size() ? Math.min(length, shifts
+						.get(i + 1).position) : length;
+				if (net % keyLength == 0 || from >= to) {
+					continue;
+				}
+				// Replacing letters with letters leaves the index as it is
+				String text = source.getText(from, to - from);
+				target.replace(from, to - from, transform(text, index
+						.lettersBefore(from)), null);
+			}
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			shifts.clear();
+		}
+	}
+
+	private static class PhaseShift {
+		int position;
+		final int letters;
+
+		PhaseShift(int position, int letters) {
+			this.position = position;
+			this.letters = letters;
+		}
+	}
+}
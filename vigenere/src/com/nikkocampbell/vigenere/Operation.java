@@ -0,0 +1,13 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: Operation.java
+ *
+ * The operations of {@link Vigenere} that are reported to
+ * {@link OperationListener}s when instrumentation is enabled.
+ */
+package com.nikkocampbell.vigenere;
+
+public enum Operation {
+	ENCRYPT, DECRYPT, FORMAT, KASISKI, ESTIMATE_KEY, ESTIMATE_KEY_LENGTH, CALC_IC
+}
@@ -0,0 +1,29 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: OperationListener.java
+ *
+ * Receives a report of every instrumented operation once it completes.
+ * Listeners are called on the thread that ran the operation, so they must be
+ * thread safe and should return quickly.
+ */
+package com.nikkocampbell.vigenere;
+
+public interface OperationListener {
+
+	/**
+	 * Called when an operation completes, whether or not it succeeded
+	 *
+	 * @param operation
+	 *            the operation that ran
+	 * @param inputLength
+	 *            the number of characters or letters given to the operation
+	 * @param nanos
+	 *            the wall clock time the operation took
+	 * @param allocatedBytes
+	 *            the bytes allocated by the thread during the operation, or -1
+	 *            if the JVM cannot measure allocation
+	 */
+	void operationCompleted(Operation operation, long inputLength, long nanos,
+			long allocatedBytes);
+}
@@ -0,0 +1,109 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: OperationStats.java
+ *
+ * A snapshot of the statistics recorded by {@link VigenereMetrics} for one
+ * operation. Latencies are kept in a histogram of power of two buckets, where
+ * bucket i counts the calls taking from 2^i up to 2^(i+1) nanoseconds.
+ */
+package com.nikkocampbell.vigenere;
+
+public class OperationStats {
+
+	private final String operation;
+	private final long callCount;
+	private final long charactersProcessed;
+	private final long totalNanos;
+	private final long allocatedBytes;
+	private final long[] latencyHistogram;
+
+	OperationStats(String operation, long callCount, long charactersProcessed,
+			long totalNanos, long allocatedBytes, long[] latencyHistogram) {
+		this.operation = operation;
+		this.callCount = callCount;
+		this.charactersProcessed = charactersProcessed;
+		this.totalNanos = totalNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.latencyHistogram = latencyHistogram;
+	}
+
+	/**
+	 * @return the name of the operation
+	 */
+	public String getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return the number of calls
+	 */
+	public long getCallCount() {
+		return callCount;
+	}
+
+	/**
+	 * @return the total number of characters or letters given to the calls
+	 */
+	public long getCharactersProcessed() {
+		return charactersProcessed;
+	}
+
+	/**
+	 * @return the total time spent in the calls
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * @return the mean time per call
+	 */
+	public long getMeanNanos() {
+		return callCount == 0 ? 0 : totalNanos / callCount;
+	}
+
+	/**
+	 * @return the mean number of bytes allocated per call, or -1 if
+	 *         allocation is not measured
+	 */
+	public long getAllocatedBytesPerCall() {
+		return allocatedBytes < 0 || callCount == 0 ? -1 : allocatedBytes
+				/ callCount;
+	}
+
+	/**
+	 * @return the number of calls in each power of two latency bucket
+	 */
+	public long[] getLatencyHistogram() {
+		return latencyHistogram.clone();
+	}
+
+	/**
+	 * Estimates a latency percentile from the histogram
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the upper bound in nanoseconds of the bucket holding the
+	 *         percentile
+	 */
+	public long getPercentileNanos(double percentile) {
+		long target = (long) Math.ceil(callCount * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < latencyHistogram.length; i++) {
+			seen += latencyHistogram[i];
+			if (seen >= target && seen > 0) {
+				return i >= 62 ? Long.MAX_VALUE : 2L << i;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return operation + ": " + callCount + " calls, "
+				+ charactersProcessed + " chars, mean " + getMeanNanos()
+				+ " ns, p99 < " + getPercentileNanos(99) + " ns, "
+				+ getAllocatedBytesPerCall() + " B/call";
+	}
+}
@@ -0,0 +1,295 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: PagedTextView.java
+ *
+ * A read-only text view for results too large for a JTextArea. The text is
+ * drawn in a monospaced font and wrapped at a fixed number of columns, which
+ * suits the unbroken runs of letters the cipher produces and means the
+ * position of every line is known without laying out the text before it.
+ * Only the lines inside the visible area are fetched from the
+ * {@link TextSource} and drawn, so the cost of showing or scrolling the text
+ * does not depend on its length. The whole text can still be copied to the
+ * clipboard or exported to a file from the context menu.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.UIManager;
+
+public class PagedTextView extends JComponent implements Scrollable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int EXPORT_CHUNK = 64 * 1024;
+
+	private static final TextSource EMPTY = new TextSource() {
+		@Override
+		public int length() {
+			return 0;
+		}
+
+		@Override
+		public void getChars(int start, int end, char[] dst, int dstOff) {
+		}
+	};
+
+	private TextSource source = EMPTY;
+	private final int rows;
+	private final int columns;
+	private char[] lineBuffer = new char[0];
+
+	/**
+	 * Constructs an empty view
+	 *
+	 * @param rows
+	 *            the number of rows shown by default
+	 * @param columns
+	 *            the number of columns shown by default
+	 */
+	public PagedTextView(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		setOpaque(true);
+		setBackground(UIManager.getColor("TextArea.background"));
+		setForeground(UIManager.getColor("TextArea.foreground"));
+		setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+		setFocusable(true);
+
+		final AbstractAction copyAll = new AbstractAction("Copy All") {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				copyAll();
+			}
+		};
+		AbstractAction export = new AbstractAction("Export...") {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				export();
+			}
+		};
+		getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_C, Toolkit
+				.getDefaultToolkit().getMenuShortcutKeyMaskEx()), "copyAll");
+		getActionMap().put("copyAll", copyAll);
+
+		final JPopupMenu menu = new JPopupMenu();
+		menu.add(copyAll);
+		menu.add(export);
+		setComponentPopupMenu(menu);
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				requestFocusInWindow();
+			}
+		});
+	}
+
+	/**
+	 * Shows a string
+	 *
+	 * @param text
+	 *            the text to show
+	 */
+	public void setText(final String text) {
+		setSource(new TextSource() {
+			@Override
+			public int length() {
+				return text.length();
+			}
+
+			@Override
+			public void getChars(int start, int end, char[] dst, int dstOff) {
+				text.getChars(start, end, dst, dstOff);
+			}
+		});
+	}
+
+	/**
+	 * Shows text fetched on demand from a source
+	 *
+	 * @param source
+	 *            the text to show
+	 */
+	public void setSource(TextSource source) {
+		this.source = source == null ? EMPTY : source;
+		revalidate();
+		repaint();
+		scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+	}
+
+	/**
+	 * @return the source of the text shown
+	 */
+	public TextSource getSource() {
+		return source;
+	}
+
+	/**
+	 * Copies the whole text to the system clipboard
+	 */
+	public void copyAll() {
+		char[] text = new char[source.length()];
+		source.getChars(0, text.length, text, 0);
+		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(
+				new StringSelection(new String(text)), null);
+	}
+
+	/**
+	 * Asks for a file and writes the whole text to it a chunk at a time
+	 */
+	public void export() {
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		File file = chooser.getSelectedFile();
+		try (Writer out = Files.newBufferedWriter(file.toPath(),
+				StandardCharsets.UTF_8)) {
+			char[] chunk = new char[EXPORT_CHUNK];
+			int length = source.length();
+			for (int start = 0; start < length; start += EXPORT_CHUNK) {
+				int end = Math.min(length, start + EXPORT_CHUNK);
+				source.getChars(start, end, chunk, 0);
+				out.write(chunk, 0, end - start);
+			}
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, "Could not export: "
+					+ e.getMessage(), "Vigenere Tool",
+					JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		if (isOpaque()) {
+			g.setColor(getBackground());
+			g.fillRect(clip.x, clip.y, clip.width, clip.height);
+		}
+
+		FontMetrics metrics = getFontMetrics(getFont());
+		Insets insets = getInsets();
+		int lineHeight = metrics.getHeight();
+		int perLine = charsPerLine(getWidth());
+		int lines = lineCount(perLine);
+		int first = Math.max(0, (clip.y - insets.top) / lineHeight);
+		int last = Math.min(lines - 1, (clip.y + clip.height - insets.top)
+				/ lineHeight);
+		if (first > last) {
+			return;
+		}
+
+		// Fetch every visible line in one call to the source
+		int start = first * perLine;
+		int end = (int) Math.min(source.length(), (long) (last + 1) * perLine);
+		if (lineBuffer.length < end - start) {
+			lineBuffer = new char[end - start];
+		}
+		source.getChars(start, end, lineBuffer, 0);
+
+		g.setFont(getFont());
+		g.setColor(getForeground());
+		for (int line = first; line <= last; line++) {
+			int off = (line - first) * perLine;
+			int len = Math.min(perLine, end - start - off);
+			int y = insets.top + line * lineHeight + metrics.getAscent();
+			g.drawChars(lineBuffer, off, len, insets.left, y);
+		}
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet()) {
+			return super.getPreferredSize();
+		}
+		FontMetrics metrics = getFontMetrics(getFont());
+		Insets insets = getInsets();
+		int width = getParent() == null ? columns * charWidth()
+				+ insets.left + insets.right : getParent().getWidth();
+		long height = (long) lineCount(charsPerLine(width))
+				* metrics.getHeight() + insets.top + insets.bottom;
+		return new Dimension(width, (int) Math.min(Integer.MAX_VALUE, height));
+	}
+
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		Insets insets = getInsets();
+		return new Dimension(columns * charWidth() + insets.left
+				+ insets.right, rows * getFontMetrics(getFont()).getHeight()
+				+ insets.top + insets.bottom);
+	}
+
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect,
+			int orientation, int direction) {
+		return orientation == SwingConstants.VERTICAL ? getFontMetrics(
+				getFont()).getHeight() : charWidth();
+	}
+
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect,
+			int orientation, int direction) {
+		int unit = getScrollableUnitIncrement(visibleRect, orientation,
+				direction);
+		int visible = orientation == SwingConstants.VERTICAL ? visibleRect.height
+				: visibleRect.width;
+		return Math.max(unit, visible - unit);
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		return true;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		return false;
+	}
+
+	private int charWidth() {
+		return getFontMetrics(getFont()).charWidth('M');
+	}
+
+	private int charsPerLine(int width) {
+		Insets insets = getInsets();
+		return Math.max(1, (width - insets.left - insets.right) / charWidth());
+	}
+
+	private int lineCount(int perLine) {
+		return (source.length() + perLine - 1) / perLine;
+	}
+}
@@ -0,0 +1,320 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: QuadgramSolver.java
+ *
+ * Refines a key estimate by hill climbing on the quadgram fitness of the
+ * decryption. Starting from the chi-squared estimate, each key letter in turn
+ * is replaced by whichever letter most improves the score, until no single
+ * change helps. Changing one key letter only alters every keyLength-th letter
+ * of the decryption, so only the quadgrams overlapping those letters are
+ * rescored. Several climbs from perturbed starting keys run in parallel and
+ * the best result is kept, which helps on short texts and long keys where
+ * single letter statistics alone are unreliable.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+public class QuadgramSolver {
+
+	/**
+	 * The number of climbs made by the default solver
+	 */
+	public static final int DEFAULT_RESTARTS = Math.max(16, Runtime
+			.getRuntime().availableProcessors());
+
+	private final QuadgramTable table;
+	private final ChiSquaredKeySolver initialSolver;
+	private final int restarts;
+	private final long seed;
+
+	/**
+	 * Constructs a solver for the default language model making
+	 * {@link #DEFAULT_RESTARTS} climbs
+	 *
+	 * @see LanguageModel#getDefault()
+	 */
+	public QuadgramSolver() {
+		this(LanguageModel.getDefault());
+	}
+
+	/**
+	 * Constructs a solver for a language making {@link #DEFAULT_RESTARTS}
+	 * climbs, starting from the key estimated by the letter frequencies of
+	 * the language and scoring by its quadgrams
+	 *
+	 * @param model
+	 *            the model of the plaintext language
+	 */
+	public QuadgramSolver(LanguageModel model) {
+		this(model.getQuadgrams(), model.getKeySolver(), DEFAULT_RESTARTS, 0);
+	}
+
+	/**
+	 * Constructs a solver
+	 *
+	 * @param table
+	 *            the quadgram table of the plaintext language
+	 * @param initialSolver
+	 *            the solver giving the starting key estimate
+	 * @param restarts
+	 *            the number of independent climbs, the first of which starts
+	 *            from the unperturbed estimate
+	 * @param seed
+	 *            the seed for the perturbation of starting keys
+	 */
+	public QuadgramSolver(QuadgramTable table,
+			ChiSquaredKeySolver initialSolver, int restarts, long seed) {
+		this.table = table;
+		this.initialSolver = initialSolver;
+		this.restarts = Math.max(1, restarts);
+		this.seed = seed;
+	}
+
+	/**
+	 * Estimates the key of a ciphertext
+	 *
+	 * @param ciphertext
+	 *            a string encrypted with a key of length keyLength
+	 * @param keyLength
+	 *            length of the key used to encrypt ciphertext
+	 * @return the best key found
+	 */
+	public KeyEstimate solve(String ciphertext, int keyLength) {
+		byte[] letters = TextNormalizer.toIndices(ciphertext);
+		return solve(letters, letters.length, keyLength);
+	}
+
+	/**
+	 * Estimates the key of already normalized ciphertext
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the ciphertext
+	 * @param keyLength
+	 *            length of the key used to encrypt the ciphertext
+	 * @return the best key found
+	 */
+	public KeyEstimate solve(byte[] letters, int length, int keyLength) {
+		return solve(letters, length, keyLength, null);
+	}
+
+	/**
+	 * Estimates the key of already normalized ciphertext, reporting progress
+	 * as each climb finishes. Interrupting the calling thread stops every
+	 * climb at its next pass over the key.
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the ciphertext
+	 * @param keyLength
+	 *            length of the key used to encrypt the ciphertext
+	 * @param progress
+	 *            receives the percentage of climbs finished, from any thread,
+	 *            or null
+	 * @return the best key found
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 */
+	public KeyEstimate solve(final byte[] letters, final int length,
+			final int keyLength, final IntConsumer progress) {
+		final Thread caller = Thread.currentThread();
+		final String initial = initialSolver.estimateKey(letters, length,
+				keyLength).getKey();
+		final int[] finished = new int[1];
+
+		List<Callable<Climber>> climbs = new ArrayList<Callable<Climber>>();
+		for (int r = 0; r < restarts; r++) {
+			final int restart = r;
+			climbs.add(new Callable<Climber>() {
+				@Override
+				public Climber call() {
+					Climber climber = new Climber(letters, length, keyLength);
+					climber.start(initial, restart == 0 ? null : new Random(
+							seed + restart));
+					climber.climb(caller);
+					if (progress != null) {
+						// Report in order even when climbs finish together
+						synchronized (finished) {
+							progress.accept(100 * ++finished[0] / restarts);
+						}
+					}
+					return climber;
+				}
+			});
+		}
+
+		Climber best = null;
+		try {
+			for (Future<Climber> result : ForkJoinPool.commonPool()
+					.invokeAll(climbs)) {
+				Climber climber = result.get();
+				if (best == null || climber.total > best.total) {
+					best = climber;
+				}
+			}
+		} catch (InterruptedException e) {
+			caller.interrupt();
+			throw new CancellationException("interrupted while solving");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		// Climbs cut short by an interrupt are not worth reporting
+		ThreadPools.checkInterrupted(caller);
+		return best.toKeyEstimate();
+	}
+
+	/**
+	 * The state of a single climb: the current key, the decryption under it
+	 * and the score of every quadgram of the decryption
+	 */
+	private class Climber {
+		final byte[] cipher;
+		final int length;
+		final int keyLength;
+		final int[] key;
+		final byte[] plain;
+		final float[] scores;
+		double total;
+
+		Climber(byte[] cipher, int length, int keyLength) {
+			this.cipher = cipher;
+			this.length = length;
+			this.keyLength = keyLength;
+			key = new int[keyLength];
+			plain = new byte[length];
+			scores = new float[Math.max(0, length - 3)];
+		}
+
+		void start(String initial, Random perturb) {
+			for (int j = 0; j < keyLength; j++) {
+				key[j] = initial.charAt(j) - 'A';
+				if (perturb != null && perturb.nextInt(4) == 0) {
+					key[j] = perturb.nextInt(26);
+				}
+			}
+			for (int i = 0; i < length; i++) {
+				plain[i] = decrypt(cipher[i], key[i % keyLength]);
+			}
+			total = 0;
+			for (int s = 0; s < scores.length; s++) {
+				scores[s] = table.score(QuadgramTable.code(plain, s));
+				total += scores[s];
+			}
+		}
+
+		/*
+		 * Climbs until no single letter change improves the score, or the
+		 * caller is interrupted
+		 */
+		void climb(Thread caller) {
+			boolean improved = true;
+			while (improved && !caller.isInterrupted()) {
+				improved = false;
+				for (int j = 0; j < keyLength; j++) {
+					int bestLetter = key[j];
+					double bestDelta = 0;
+					for (int k = 0; k < 26; k++) {
+						if (k == key[j]) {
+							continue;
+						}
+						double delta = delta(j, k);
+						if (delta > bestDelta) {
+							bestDelta = delta;
+							bestLetter = k;
+						}
+					}
+					if (bestLetter != key[j]) {
+						apply(j, bestLetter);
+						improved = true;
+					}
+				}
+			}
+		}
+
+		/*
+		 * Returns the change in total score from setting key letter j to k,
+		 * leaving the state unchanged
+		 */
+		double delta(int j, int k) {
+			setColumn(j, k);
+			double delta = 0;
+			int next = 0;
+			for (int i = j; i < length; i += keyLength) {
+				int from = Math.max(next, i - 3);
+				int to = Math.min(i, scores.length - 1);
+				for (int s = from; s <= to; s++) {
+					delta += table.score(QuadgramTable.code(plain, s))
+							- scores[s];
+				}
+				next = to + 1;
+			}
+			setColumn(j, key[j]);
+			return delta;
+		}
+
+		/*
+		 * Sets key letter j to k and rescores the affected quadgrams
+		 */
+		void apply(int j, int k) {
+			key[j] = k;
+			setColumn(j, k);
+			int next = 0;
+			for (int i = j; i < length; i += keyLength) {
+				int from = Math.max(next, i - 3);
+				int to = Math.min(i, scores.length - 1);
+				for (int s = from; s <= to; s++) {
+					float score = table.score(QuadgramTable.code(plain, s));
+					total += score - scores[s];
+					scores[s] = score;
+				}
+				next = to + 1;
+			}
+		}
+
+		void setColumn(int j, int k) {
+			for (int i = j; i < length; i += keyLength) {
+				plain[i] = decrypt(cipher[i], k);
+			}
+		}
+
+		/*
+		 * The confidence in each letter compares the score of the chosen
+		 * letter with that of the best alternative, per affected quadgram
+		 */
+		KeyEstimate toKeyEstimate() {
+			char[] letters = new char[keyLength];
+			double[] confidences = new double[keyLength];
+			for (int j = 0; j < keyLength; j++) {
+				letters[j] = (char) (key[j] + 'A');
+				double margin = Double.MAX_VALUE;
+				for (int k = 0; k < 26; k++) {
+					if (k != key[j]) {
+						margin = Math.min(margin, -delta(j, k));
+					}
+				}
+				int affected = Math.max(1, 4 * ((length - j + keyLength - 1)
+						/ keyLength));
+				confidences[j] = Math.max(0,
+						1 - Math.pow(10, -margin / affected));
+			}
+			return new KeyEstimate(new String(letters), confidences);
+		}
+	}
+
+	private static byte decrypt(int cipherLetter, int keyLetter) {
+		int plain = cipherLetter - keyLetter;
+		return (byte) (plain < 0 ? plain + 26 : plain);
+	}
+}
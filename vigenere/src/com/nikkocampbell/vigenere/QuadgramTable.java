@@ -0,0 +1,162 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: QuadgramTable.java
+ *
+ * The log10 probability of every 4-letter sequence (quadgram) of a language,
+ * stored in a flat float buffer indexed by the packed quadgram code. The
+ * buffer may be an array on the heap or a table mapped from a
+ * {@link LanguageModel} file. The sum of the log probabilities of the
+ * quadgrams of a text measures how closely the text resembles the language,
+ * which makes it a far sharper fitness measure for candidate decryptions than
+ * single letter frequencies.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.FloatBuffer;
+
+public class QuadgramTable {
+
+	/**
+	 * The number of distinct quadgrams over the alphabet A-Z
+	 */
+	public static final int QUADGRAM_COUNT = 26 * 26 * 26 * 26;
+
+	private final FloatBuffer logProbabilities;
+
+	/**
+	 * Constructs a table from precomputed log probabilities
+	 *
+	 * @param logProbabilities
+	 *            the log10 probability of each quadgram, indexed by code
+	 */
+	public QuadgramTable(float[] logProbabilities) {
+		this(FloatBuffer.wrap(logProbabilities));
+	}
+
+	/**
+	 * Constructs a table reading precomputed log probabilities in place
+	 *
+	 * @param logProbabilities
+	 *            a buffer whose remaining elements are the log10 probability
+	 *            of each quadgram, indexed by code
+	 */
+	public QuadgramTable(FloatBuffer logProbabilities) {
+		if (logProbabilities.remaining() != QUADGRAM_COUNT) {
+			throw new IllegalArgumentException("expected " + QUADGRAM_COUNT
+					+ " quadgram probabilities");
+		}
+		this.logProbabilities = logProbabilities.slice();
+	}
+
+	/**
+	 * Builds a table by counting the quadgrams of a corpus. Quadgrams that do
+	 * not occur are given a small floor probability rather than zero.
+	 *
+	 * @param corpus
+	 *            a reader supplying text in the language
+	 * @return the table of quadgram log probabilities of the corpus
+	 * @throws IOException
+	 *             if the corpus cannot be read
+	 */
+	public static QuadgramTable fromCorpus(Reader corpus) throws IOException {
+		LanguageModelBuilder builder = new LanguageModelBuilder();
+		builder.add(corpus);
+		return builder.build("corpus").getQuadgrams();
+	}
+
+	/**
+	 * Returns the table built from the English text bundled with the tool
+	 *
+	 * @return the English quadgram table
+	 */
+	public static QuadgramTable english() {
+		return LanguageModel.english().getQuadgrams();
+	}
+
+	/**
+	 * Returns the log probability of a quadgram
+	 *
+	 * @param code
+	 *            the packed quadgram code
+	 * @return the log10 probability of the quadgram
+	 */
+	public float score(int code) {
+		return logProbabilities.get(code);
+	}
+
+	/**
+	 * Returns the average quadgram score expected of text in the language,
+	 * that is the sum of each quadgram's probability times its log
+	 * probability. Quadgrams at the lowest score are taken to be the floor
+	 * given to unseen quadgrams and are left out.
+	 *
+	 * @return the expected log10 probability per quadgram of the language
+	 */
+	public double getExpectedScore() {
+		float floor = 0;
+		for (int i = 0; i < QUADGRAM_COUNT; i++) {
+			floor = Math.min(floor, logProbabilities.get(i));
+		}
+		double expected = 0;
+		double mass = 0;
+		for (int i = 0; i < QUADGRAM_COUNT; i++) {
+			float logProbability = logProbabilities.get(i);
+			if (logProbability > floor) {
+				double probability = Math.pow(10, logProbability);
+				expected += probability * logProbability;
+				mass += probability;
+			}
+		}
+		return mass == 0 ? floor : expected / mass;
+	}
+
+	/**
+	 * Returns the average quadgram score expected of uniformly random letters
+	 *
+	 * @return the mean log10 probability over all quadgrams
+	 */
+	public double getRandomScore() {
+		double total = 0;
+		for (int i = 0; i < QUADGRAM_COUNT; i++) {
+			total += logProbabilities.get(i);
+		}
+		return total / QUADGRAM_COUNT;
+	}
+
+	/**
+	 * Scores a range of normalized text by the sum of the log probabilities
+	 * of its quadgrams
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param off
+	 *            the position of the first letter
+	 * @param len
+	 *            the number of letters to score
+	 * @return the total log10 probability of the quadgrams in the range
+	 */
+	public double score(byte[] letters, int off, int len) {
+		double total = 0;
+		for (int i = off; i + 4 <= off + len; i++) {
+			total += logProbabilities.get(code(letters, i));
+		}
+		return total;
+	}
+
+	/**
+	 * Packs the quadgram starting at a position into its code
+	 *
+	 * @param letters
+	 *            letter indices (0-25)
+	 * @param pos
+	 *            the position of the first letter of the quadgram
+	 * @return a code between 0 and {@link #QUADGRAM_COUNT} - 1
+	 */
+	public static int code(byte[] letters, int pos) {
+		return ((letters[pos] * 26 + letters[pos + 1]) * 26 + letters[pos + 2])
+				* 26 + letters[pos + 3];
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: RepeatFinder.java
+ *
+ * Finds the repeated substrings of every length within a text using a suffix
+ * array and its longest common prefix (LCP) array. Used as a generalization of
+ * the Kasiski test, where longer repeats are given more weight than short ones
+ * since they are far less likely to occur by chance.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class RepeatFinder {
+
+	private final byte[] letters;
+	private final int[] suffixArray;
+	private final int[] lcp;
+
+	/**
+	 * Builds the suffix and LCP arrays of a text in O(n log n) time
+	 *
+	 * @param text
+	 *            the text to search, normalized by {@link TextNormalizer}
+	 */
+	public RepeatFinder(String text) {
+		this(TextNormalizer.toIndices(text));
+	}
+
+	private RepeatFinder(byte[] letters) {
+		this(letters, letters.length);
+	}
+
+	/**
+	 * Builds the suffix and LCP arrays of already normalized text in
+	 * O(n log n) time
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the text
+	 */
+	public RepeatFinder(byte[] letters, int length) {
+		this.letters = Arrays.copyOf(letters, length);
+		suffixArray = buildSuffixArray(this.letters);
+		lcp = buildLcpArray(this.letters, suffixArray);
+	}
+
+	/**
+	 * Finds every maximal repeat of at least a given length. A repeat is
+	 * maximal when it cannot be extended to the left or the right without
+	 * losing one of its occurrences.
+	 *
+	 * @param minLength
+	 *            the shortest repeat to report
+	 * @return a {@link Substring} for each maximal repeat, holding the positions
+	 *         of its occurrences in increasing order
+	 */
+	public ArrayList<Substring> findMaximalRepeats(int minLength) {
+		ArrayList<Substring> repeats = new ArrayList<Substring>();
+		int n = suffixArray.length;
+		if (n < 2) {
+			return repeats;
+		}
+
+		/*
+		 * Walk the LCP intervals bottom-up with a stack. Each interval
+		 * [lb, rb] with LCP value l groups the suffixes sharing a repeat of
+		 * length l, which is right-maximal by construction.
+		 */
+		int[] stackLcp = new int[n + 1];
+		int[] stackLb = new int[n + 1];
+		int top = 0;
+		stackLcp[0] = 0;
+		stackLb[0] = 0;
+		for (int i = 1; i <= n; i++) {
+			int current = i < n ? lcp[i] : 0;
+			int lb = i - 1;
+			while (current < stackLcp[top]) {
+				int length = stackLcp[top];
+				lb = stackLb[top--];
+				if (length >= minLength) {
+					addIfLeftMaximal(repeats, lb, i - 1, length);
+				}
+			}
+			if (current > stackLcp[top]) {
+				stackLcp[++top] = current;
+				stackLb[top] = lb;
+			}
+		}
+		return repeats;
+	}
+
+	/**
+	 * Performs a Kasiski test using every maximal repeat of at least a given
+	 * length. The factors of the distances between subsequent occurrences of
+	 * each repeat are weighted by the length of the repeat.
+	 *
+	 * @param minLength
+	 *            the shortest repeat to consider
+	 * @param minKeyLength
+	 *            the minimum length that may be returned for the key length
+	 * @param maxKeyLength
+	 *            the maximum length that may be returned for the key length
+	 * @return the estimated length of the key used to encrypt the text
+	 * @see Vigenere#kasiski(String, int, int)
+	 */
+	public int kasiski(int minLength, int minKeyLength, int maxKeyLength) {
+		FactorCounter factorCounter = new FactorCounter(minKeyLength,
+				maxKeyLength);
+		for (Substring repeat : findMaximalRepeats(minLength)) {
+			int weight = repeat.getValue().length();
+			for (int i = 0; i < repeat.getDifferenceCount(); i++) {
+				factorCounter.add(repeat.getDifference(i), weight);
+			}
+		}
+		return factorCounter.estimateKeyLength();
+	}
+
+	private void addIfLeftMaximal(ArrayList<Substring> repeats, int lb,
+			int rb, int length) {
+		int[] positions = Arrays.copyOfRange(suffixArray, lb, rb + 1);
+		boolean leftMaximal = false;
+		int first = positions[0];
+		for (int j = 0; j < positions.length && !leftMaximal; j++) {
+			int pos = positions[j];
+			leftMaximal = pos == 0 || first == 0
+					|| letters[pos - 1] != letters[first - 1];
+		}
+		if (!leftMaximal) {
+			return;
+		}
+
+		Arrays.sort(positions);
+		repeats.add(new Substring(TextNormalizer.toString(Arrays.copyOfRange(
+				letters, positions[0], positions[0] + length), length),
+				positions, positions.length));
+	}
+
+	/**
+	 * Sorts the suffixes of text by prefix doubling, ranking suffixes by their
+	 * first 2^k letters with a radix sort on each round
+	 */
+	private static int[] buildSuffixArray(byte[] text) {
+		int n = text.length;
+		int[] sa = new int[n];
+		int[] rank = new int[n];
+		int[] tmp = new int[n];
+		int[] count = new int[Math.max(n, 26) + 1];
+
+		for (int i = 0; i < n; i++) {
+			rank[i] = text[i];
+			count[rank[i]]++;
+		}
+		for (int i = 1; i < count.length; i++) {
+			count[i] += count[i - 1];
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			sa[--count[rank[i]]] = i;
+		}
+
+		int classes = 26;
+		for (int k = 1; k < n; k <<= 1) {
+			ThreadPools.checkInterrupted(Thread.currentThread());
+
+			// Order by second key: suffixes without one come first
+			int p = 0;
+			for (int i = n - k; i < n; i++) {
+				tmp[p++] = i;
+			}
+			for (int j = 0; j < n; j++) {
+				if (sa[j] >= k) {
+					tmp[p++] = sa[j] - k;
+				}
+			}
+
+			// Stable counting sort by first key
+			Arrays.fill(count, 0, classes + 1, 0);
+			for (int i = 0; i < n; i++) {
+				count[rank[i]]++;
+			}
+			for (int i = 1; i <= classes; i++) {
+				count[i] += count[i - 1];
+			}
+			for (int i = n - 1; i >= 0; i--) {
+				sa[--count[rank[tmp[i]]]] = tmp[i];
+			}
+
+			// Re-rank, giving equal pairs of keys the same rank
+			tmp[sa[0]] = 0;
+			classes = 1;
+			for (int i = 1; i < n; i++) {
+				int prev = sa[i - 1], cur = sa[i];
+				int prevSecond = prev + k < n ? rank[prev + k] : -1;
+				int curSecond = cur + k < n ? rank[cur + k] : -1;
+				if (rank[prev] != rank[cur] || prevSecond != curSecond) {
+					classes++;
+				}
+				tmp[cur] = classes - 1;
+			}
+			int[] swap = rank;
+			rank = tmp;
+			tmp = swap;
+			if (classes == n) {
+				break;
+			}
+		}
+		return sa;
+	}
+
+	/**
+	 * Computes the length of the longest common prefix of each suffix and the
+	 * one before it in the suffix array using Kasai's algorithm
+	 */
+	private static int[] buildLcpArray(byte[] text, int[] sa) {
+		int n = sa.length;
+		int[] rank = new int[n];
+		int[] lcp = new int[n];
+		for (int i = 0; i < n; i++) {
+			rank[sa[i]] = i;
+		}
+		int h = 0;
+		for (int i = 0; i < n; i++) {
+			if (rank[i] > 0) {
+				int j = sa[rank[i] - 1];
+				while (i + h < n && j + h < n
+						&& text[i + h] == text[j + h]) {
+					h++;
+				}
+				lcp[rank[i]] = h;
+				if (h > 0) {
+					h--;
+				}
+			} else {
+				h = 0;
+			}
+		}
+		return lcp;
+	}
+}
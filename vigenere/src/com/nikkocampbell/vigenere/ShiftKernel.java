@@ -0,0 +1,87 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: ShiftKernel.java
+ *
+ * Shifts arrays of letter indices by a repeating key in bulk. The key is laid
+ * out once as a key-stream buffer several kilobytes long, so the inner loop
+ * is a plain element-wise add of two byte arrays followed by a branchless
+ * reduction mod 26 (subtracting 26 where the sum exceeds 25) instead of a
+ * division. The loop has no dependencies between elements, which lets the
+ * JIT compiler vectorize it with SIMD instructions.
+ */
+package com.nikkocampbell.vigenere;
+
+public class ShiftKernel {
+
+	private static final int BLOCK_SIZE = 4096;
+
+	private final int keyLength;
+	private final byte[] keyStream;
+
+	/**
+	 * Constructs a kernel for a keyword
+	 *
+	 * @param keyword
+	 *            a string to use in the encryption or decryption
+	 * @param encrypt
+	 *            true to shift letters forward (encryption), false to shift
+	 *            them backward (decryption)
+	 */
+	public ShiftKernel(String keyword, boolean encrypt) {
+		String key = TextNormalizer.format(keyword);
+		if (key.length() == 0) {
+			throw new IllegalArgumentException(
+					"keyword must contain at least one letter");
+		}
+		keyLength = key.length();
+
+		// A whole number of key repetitions, plus room to start at any phase
+		int repeats = Math.max(1, BLOCK_SIZE / keyLength);
+		keyStream = new byte[keyLength * (repeats + 1)];
+		for (int i = 0; i < keyStream.length; i++) {
+			int keyChar = key.charAt(i % keyLength) - 'A';
+			keyStream[i] = (byte) (encrypt ? keyChar : (26 - keyChar) % 26);
+		}
+	}
+
+	/**
+	 * Shifts a range of letter indices. Source and destination may be the
+	 * same array.
+	 *
+	 * @param src
+	 *            letter indices (0-25) to shift
+	 * @param srcOff
+	 *            the position of the first index in src
+	 * @param dst
+	 *            the array to receive the shifted indices
+	 * @param dstOff
+	 *            the position in dst of the first shifted index
+	 * @param len
+	 *            the number of indices to shift
+	 * @param letterOffset
+	 *            the position of the first index within the whole message,
+	 *            which determines the starting key letter
+	 */
+	public void apply(byte[] src, int srcOff, byte[] dst, int dstOff,
+			int len, long letterOffset) {
+		int phase = (int) (letterOffset % keyLength);
+		int blockLength = keyStream.length - keyLength;
+		while (len > 0) {
+			int n = Math.min(len, blockLength);
+			shift(src, srcOff, dst, dstOff, n, keyStream, phase);
+			srcOff += n;
+			dstOff += n;
+			len -= n;
+			// Each block is a whole number of repetitions, so phase is kept
+		}
+	}
+
+	private static void shift(byte[] src, int srcOff, byte[] dst, int dstOff,
+			int len, byte[] key, int keyOff) {
+		for (int i = 0; i < len; i++) {
+			int v = src[srcOff + i] + key[keyOff + i];
+			dst[dstOff + i] = (byte) (v - (26 & ((25 - v) >> 31)));
+		}
+	}
+}
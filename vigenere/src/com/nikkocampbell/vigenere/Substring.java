@@ -5,18 +5,24 @@
  * 
  * A representation of a substring within a larger text. Stores the value of
  * the substring as well as the position of all occurrences of the substring
- * within the larger text.
+ * within the larger text. Positions are kept in a growable int array and the
+ * differences between them are computed once, on first use, so reading them
+ * neither boxes nor copies.
  */
 package com.nikkocampbell.vigenere;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 public class Substring {
 
-	private String message;
-	private ArrayList<Integer> positions;
-	private ArrayList<Integer> differences;
+	private static final int[] NO_DIFFERENCES = new int[0];
+
+	private final String message;
+	private int[] positions;
+	private int count;
+	private int[] differences;
 
 	/**
 	 * Constructs a new substring instance for a given string message and adds
@@ -29,9 +35,30 @@ public class Substring {
 	 */
 	public Substring(String msg, int pos) {
 		message = msg;
-		positions = new ArrayList<Integer>();
-		differences = new ArrayList<Integer>();
-		positions.add(pos);
+		positions = new int[] { pos };
+		count = 1;
+	}
+
+	/**
+	 * Constructs a new substring instance with several occurrences at once.
+	 * The array is used as it is rather than copied, so it must not be
+	 * changed afterwards by the caller.
+	 * 
+	 * @param msg
+	 *            the string representation of the substring
+	 * @param positions
+	 *            an array whose first count elements are the positions of the
+	 *            occurrences of the substring
+	 * @param count
+	 *            the number of occurrences, at least one
+	 */
+	public Substring(String msg, int[] positions, int count) {
+		if (count < 1 || count > positions.length) {
+			throw new IllegalArgumentException("count out of range: " + count);
+		}
+		message = msg;
+		this.positions = positions;
+		this.count = count;
 	}
 
 	/**
@@ -41,55 +68,90 @@ public class Substring {
 	 *            the position of the occurrence of the substring
 	 */
 	public void addOccurance(int pos) {
-		positions.add(pos);
+		if (count == positions.length) {
+			positions = Arrays.copyOf(positions, count * 2);
+		}
+		positions[count++] = pos;
+		differences = null;
 	}
 
 	/**
-	 * Computes and stores the distances between the positions of subsequent
-	 * substrings
+	 * Returns the position of an occurrence
+	 * 
+	 * @param i
+	 *            the index of the occurrence, from 0 to the occurrence count
+	 * @return the position of the i-th occurrence of the substring
 	 */
-	public void calculateDifferences() {
-		if (positions.size() > 1) {
-			for (int i = 1; i < positions.size(); i++) {
-				differences.add(positions.get(i) - positions.get(i - 1));
-			}
-		} else {
-			differences.add(0);
+	public int getPosition(int i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("occurrence " + i + " of "
+					+ count);
 		}
+		return positions[i];
 	}
 
 	/**
-	 * Returns an ArrayList of all the positions of the substring
+	 * Returns the positions of all occurrences of the substring, in the order
+	 * they were added
 	 * 
-	 * @return the positions of each occurrence of this substring
+	 * @return a stream over the positions of each occurrence
 	 */
-	public ArrayList<Integer> getPositions() {
-		ArrayList<Integer> pos = new ArrayList<Integer>();
-		for (Integer n : positions) {
-			pos.add(n);
-		}
-		return pos;
+	public IntStream getPositions() {
+		return Arrays.stream(positions, 0, count);
 	}
 
 	/**
-	 * Returns an ArrayList of all the differences between subsequent
-	 * occurrences of substrings computed by calculateDifferences. Can also
-	 * specify whether or not to recompute the differences.
+	 * Returns the number of differences between subsequent occurrences, one
+	 * fewer than the number of occurrences
 	 * 
-	 * @param recalc
-	 *            specifies if the differences should be recalculated
-	 * @return the differences between each subsequent occurrence of the
-	 *         substring
+	 * @return the number of differences
 	 */
-	public ArrayList<Integer> getDifferences(boolean recalc) {
-		if (recalc) {
-			calculateDifferences();
+	public int getDifferenceCount() {
+		return count - 1;
+	}
+
+	/**
+	 * Returns the distance from one occurrence to the next
+	 * 
+	 * @param i
+	 *            the index of the difference, from 0 to the difference count
+	 * @return the position of occurrence i + 1 less that of occurrence i
+	 */
+	public int getDifference(int i) {
+		if (i < 0 || i >= count - 1) {
+			throw new IndexOutOfBoundsException("difference " + i + " of "
+					+ (count - 1));
 		}
-		ArrayList<Integer> diff = new ArrayList<Integer>();
-		for (Integer n : differences) {
-			diff.add(n);
+		return differences()[i];
+	}
+
+	/**
+	 * Returns the differences between subsequent occurrences of the
+	 * substring. A substring occurring once has none.
+	 * 
+	 * @return a stream over the differences between each subsequent
+	 *         occurrence of the substring
+	 */
+	public IntStream getDifferences() {
+		return Arrays.stream(differences());
+	}
+
+	/**
+	 * Computes the differences the first time they are needed after an
+	 * occurrence is added
+	 */
+	private int[] differences() {
+		if (differences == null) {
+			if (count < 2) {
+				differences = NO_DIFFERENCES;
+			} else {
+				differences = new int[count - 1];
+				for (int i = 1; i < count; i++) {
+					differences[i - 1] = positions[i] - positions[i - 1];
+				}
+			}
 		}
-		return diff;
+		return differences;
 	}
 
 	/**
@@ -98,7 +160,7 @@ public class Substring {
 	 * @return number of occurrences of the substring
 	 */
 	public int getOccuranceCount() {
-		return positions.size();
+		return count;
 	}
 
 	/**
@@ -108,7 +170,7 @@ public class Substring {
 	 * @return true if only one occurrence. False otherwise
 	 */
 	public boolean isSingleOccurance() {
-		return positions.size() <= 1;
+		return count <= 1;
 	}
 
 	/**
@@ -121,22 +183,24 @@ public class Substring {
 	}
 
 	/**
-	 * Loops through an ArrayList of Substrings, removing any instances with
-	 * only a single occurrence
+	 * Removes any Substrings with only a single occurrence from an ArrayList
+	 * in one pass, moving each kept Substring down over the removed ones and
+	 * then truncating the list
 	 * 
 	 * @param substrings
 	 *            ArrayList to remove single occurrences from
-	 * @return an ArrayList of Substrings all occurring more than once
+	 * @return substrings, now holding only Substrings occurring more than once
 	 */
 	public static ArrayList<Substring> removeSingleOccurrenceSubstrings(
 			ArrayList<Substring> substrings) {
-		Iterator<Substring> it = substrings.iterator();
-		while (it.hasNext()) {
-			Substring substr = it.next();
-			if (substr.isSingleOccurance()) {
-				it.remove();
+		int kept = 0;
+		for (int i = 0; i < substrings.size(); i++) {
+			Substring substr = substrings.get(i);
+			if (!substr.isSingleOccurance()) {
+				substrings.set(kept++, substr);
 			}
 		}
+		substrings.subList(kept, substrings.size()).clear();
 		return substrings;
 	}
 
@@ -145,10 +209,11 @@ public class Substring {
 	 * the occurrences of the Substring
 	 */
 	public String toString() {
-		String out = message + ": ";
-		for (int i = 0; i < positions.size(); i++) {
-			out += positions.get(i) + ", ";
+		StringBuilder out = new StringBuilder(message.length() + 2 + count * 8);
+		out.append(message).append(": ");
+		for (int i = 0; i < count; i++) {
+			out.append(positions[i]).append(", ");
 		}
-		return out;
+		return out.toString();
 	}
 }
@@ -0,0 +1,167 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: TextNormalizer.java
+ *
+ * Converts text into the letters A-Z used by the cipher in a single pass with
+ * a precomputed lookup table. Accented Latin letters are folded to their base
+ * letter (so e with an acute accent, \u00e9, becomes 'E'), as are the
+ * fullwidth forms of A-Z, while every other character, including letters of
+ * other alphabets, is dropped. The results
+ * can be written into buffers supplied by the caller, either as upper case
+ * characters or as letter indices from 0 to 25, so that text needs to be
+ * normalized only once before being passed to the analysis methods.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+public class TextNormalizer {
+
+	/*
+	 * The letter index of each char, or -1 for characters that are dropped.
+	 * The letters that decompose to A-Z lie in the Latin blocks up to Latin
+	 * Extended-B and in Latin Extended Additional, which ends the table. The
+	 * few letterlike symbols beyond it, such as the Kelvin sign, are dropped.
+	 */
+	private static final byte[] LETTER_INDEX = new byte[0x1F00];
+
+	// Fullwidth letters fold only by compatibility, so are mapped by range
+	private static final char FULLWIDTH_A = '\uFF21';
+	private static final char FULLWIDTH_SMALL_A = '\uFF41';
+
+	static {
+		Arrays.fill(LETTER_INDEX, (byte) -1);
+		fold(0, 0x250);
+		fold(0x1E00, LETTER_INDEX.length);
+	}
+
+	private TextNormalizer() {
+	}
+
+	private static void fold(int from, int to) {
+		for (int c = from; c < to; c++) {
+			if (!Character.isLetter(c)) {
+				continue;
+			}
+			String base = Normalizer.normalize(String.valueOf((char) c),
+					Normalizer.Form.NFD);
+			char first = Character.toUpperCase(base.charAt(0));
+			if (first >= 'A' && first <= 'Z') {
+				LETTER_INDEX[c] = (byte) (first - 'A');
+			}
+		}
+	}
+
+	/**
+	 * Returns the letter index of a character
+	 *
+	 * @param c
+	 *            a character of text
+	 * @return 0-25 for letters folding to A-Z, -1 for anything else
+	 */
+	public static int indexOf(char c) {
+		if (c < LETTER_INDEX.length) {
+			return LETTER_INDEX[c];
+		} else if (c >= FULLWIDTH_A && c < FULLWIDTH_A + 26) {
+			return c - FULLWIDTH_A;
+		} else if (c >= FULLWIDTH_SMALL_A && c < FULLWIDTH_SMALL_A + 26) {
+			return c - FULLWIDTH_SMALL_A;
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the letter indices of a text into a buffer
+	 *
+	 * @param text
+	 *            the text to normalize
+	 * @param dst
+	 *            the buffer to receive the indices, with room for at least
+	 *            text.length() values from off
+	 * @param off
+	 *            the position in dst of the first index
+	 * @return the number of indices written
+	 */
+	public static int normalize(CharSequence text, byte[] dst, int off) {
+		int out = off;
+		for (int i = 0; i < text.length(); i++) {
+			int letter = indexOf(text.charAt(i));
+			if (letter >= 0) {
+				dst[out++] = (byte) letter;
+			}
+		}
+		return out - off;
+	}
+
+	/**
+	 * Writes the upper case letters of a text into a buffer
+	 *
+	 * @param text
+	 *            the text to normalize
+	 * @param dst
+	 *            the buffer to receive the letters, with room for at least
+	 *            text.length() values from off
+	 * @param off
+	 *            the position in dst of the first letter
+	 * @return the number of letters written
+	 */
+	public static int normalize(CharSequence text, char[] dst, int off) {
+		int out = off;
+		for (int i = 0; i < text.length(); i++) {
+			int letter = indexOf(text.charAt(i));
+			if (letter >= 0) {
+				dst[out++] = (char) (letter + 'A');
+			}
+		}
+		return out - off;
+	}
+
+	/**
+	 * Returns the letter indices of a text in a new array
+	 *
+	 * @param text
+	 *            the text to normalize
+	 * @return an array holding the index (0-25) of each letter of text
+	 */
+	public static byte[] toIndices(CharSequence text) {
+		byte[] letters = new byte[text.length()];
+		int length = normalize(text, letters, 0);
+		if (length == letters.length) {
+			return letters;
+		}
+		byte[] trimmed = new byte[length];
+		System.arraycopy(letters, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
+	/**
+	 * Returns the upper case letters of a text
+	 *
+	 * @param text
+	 *            the text to normalize
+	 * @return a string of the letters A-Z in text
+	 */
+	public static String format(CharSequence text) {
+		char[] letters = new char[text.length()];
+		return new String(letters, 0, normalize(text, letters, 0));
+	}
+
+	/**
+	 * Converts letter indices back into upper case text
+	 *
+	 * @param letters
+	 *            an array of letter indices (0-25)
+	 * @param length
+	 *            the number of indices to convert
+	 * @return the string of letters A-Z represented by letters
+	 */
+	public static String toString(byte[] letters, int length) {
+		char[] text = new char[length];
+		for (int i = 0; i < length; i++) {
+			text[i] = (char) (letters[i] + 'A');
+		}
+		return new String(text);
+	}
+}
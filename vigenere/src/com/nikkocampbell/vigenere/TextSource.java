@@ -0,0 +1,32 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: TextSource.java
+ *
+ * A read-only sequence of characters that is produced on demand, so that a
+ * view can fetch just the range it shows instead of holding the whole text
+ * as a String.
+ */
+package com.nikkocampbell.vigenere;
+
+public interface TextSource {
+
+	/**
+	 * @return the number of characters in the text
+	 */
+	int length();
+
+	/**
+	 * Copies a range of the text into a buffer
+	 *
+	 * @param start
+	 *            the position of the first character to copy
+	 * @param end
+	 *            the position after the last character to copy
+	 * @param dst
+	 *            the buffer to receive the characters
+	 * @param dstOff
+	 *            the position in dst of the first character
+	 */
+	void getChars(int start, int end, char[] dst, int dstOff);
+}
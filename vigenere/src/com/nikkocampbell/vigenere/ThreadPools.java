@@ -0,0 +1,57 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: ThreadPools.java
+ *
+ * Creates the executors used by the headless modes of the tool. Virtual
+ * threads are used when the running JVM provides them, with a fixed pool of
+ * platform threads as the fallback on older runtimes. Also holds the check
+ * that lets long analyses stop early when the thread running them is
+ * interrupted, as a cancelled GUI task is.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class ThreadPools {
+
+	private ThreadPools() {
+	}
+
+	/**
+	 * Returns an executor running each task on its own virtual thread, or a
+	 * fixed pool of platform threads if virtual threads are unavailable.
+	 * Callers bound the number of tasks in flight themselves.
+	 *
+	 * @param fallbackThreads
+	 *            the number of platform threads to use without virtual threads
+	 * @return a new executor, which the caller must shut down
+	 */
+	static ExecutorService newTaskExecutor(int fallbackThreads) {
+		try {
+			Method factory = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(fallbackThreads);
+		}
+	}
+
+	/**
+	 * Abandons the current computation if a thread has been interrupted,
+	 * leaving its interrupt status set
+	 *
+	 * @param thread
+	 *            the thread the computation is being done for
+	 * @throws CancellationException
+	 *             if thread has been interrupted
+	 */
+	static void checkInterrupted(Thread thread) {
+		if (thread.isInterrupted()) {
+			throw new CancellationException("interrupted");
+		}
+	}
+}
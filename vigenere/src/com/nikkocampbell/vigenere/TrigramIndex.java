@@ -0,0 +1,129 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: TrigramIndex.java
+ *
+ * An index of the positions of every 3-letter substring within a text. Each
+ * trigram is packed into a code between 0 and 17575 and its positions are
+ * stored in a single int array, grouped by code, so building the index does
+ * not allocate anything per position.
+ */
+package com.nikkocampbell.vigenere;
+
+public class TrigramIndex {
+
+	/**
+	 * The number of distinct trigrams over the alphabet A-Z
+	 */
+	public static final int TRIGRAM_COUNT = 26 * 26 * 26;
+
+	private final int[] starts;
+	private final int[] positions;
+
+	/**
+	 * Constructs an index of all trigrams within a text
+	 *
+	 * @param text
+	 *            the text to index, normalized by {@link TextNormalizer}
+	 */
+	public TrigramIndex(String text) {
+		this(TextNormalizer.toIndices(text));
+	}
+
+	private TrigramIndex(byte[] letters) {
+		this(letters, letters.length);
+	}
+
+	/**
+	 * Constructs an index of all trigrams within already normalized text
+	 *
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the text
+	 */
+	public TrigramIndex(byte[] letters, int length) {
+		starts = new int[TRIGRAM_COUNT + 1];
+
+		// Count the occurrences of each trigram
+		int code = 0;
+		for (int i = 0; i < length; i++) {
+			code = (code % (26 * 26)) * 26 + letters[i];
+			if (i >= 2) {
+				starts[code + 1]++;
+			}
+		}
+
+		// Turn the counts into the start offset of each trigram's positions
+		for (int i = 0; i < TRIGRAM_COUNT; i++) {
+			starts[i + 1] += starts[i];
+		}
+
+		// Fill in the positions, in increasing order within each trigram
+		positions = new int[Math.max(0, length - 2)];
+		int[] next = new int[TRIGRAM_COUNT];
+		System.arraycopy(starts, 0, next, 0, TRIGRAM_COUNT);
+		code = 0;
+		for (int i = 0; i < length; i++) {
+			code = (code % (26 * 26)) * 26 + letters[i];
+			if (i >= 2) {
+				positions[next[code]++] = i - 2;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of occurrences of a trigram
+	 *
+	 * @param code
+	 *            the packed code of the trigram
+	 * @return the number of times the trigram occurs in the text
+	 */
+	public int getOccurrenceCount(int code) {
+		return starts[code + 1] - starts[code];
+	}
+
+	/**
+	 * Returns the position of an occurrence of a trigram
+	 *
+	 * @param code
+	 *            the packed code of the trigram
+	 * @param occurrence
+	 *            the index of the occurrence, counting from 0
+	 * @return the position in the text of the given occurrence
+	 */
+	public int getPosition(int code, int occurrence) {
+		return positions[starts[code] + occurrence];
+	}
+
+	/**
+	 * Packs three upper case letters into a trigram code
+	 *
+	 * @param a
+	 *            the first letter
+	 * @param b
+	 *            the second letter
+	 * @param c
+	 *            the third letter
+	 * @return a code between 0 and {@link #TRIGRAM_COUNT} - 1
+	 */
+	public static int encode(char a, char b, char c) {
+		return ((a - 'A') * 26 + (b - 'A')) * 26 + (c - 'A');
+	}
+
+	/**
+	 * Unpacks a trigram code into its letters
+	 *
+	 * @param code
+	 *            the packed code of a trigram
+	 * @return the three letter string represented by code
+	 */
+	public static String decode(int code) {
+		char[] letters = new char[3];
+		for (int i = 2; i >= 0; i--) {
+			letters[i] = (char) (code % 26 + 'A');
+			code /= 26;
+		}
+		return new String(letters);
+	}
+}
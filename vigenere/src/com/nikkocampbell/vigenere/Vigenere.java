@@ -26,18 +26,18 @@ public class Vigenere {
 	 * @return the encrypted version of plaintext
 	 */
 	public static String encrypt(String plaintext, String keyword) {
-		plaintext = format(plaintext);
-		keyword = format(keyword);
-		String ciphertext = "";
-
-		for (int i = 0; i < plaintext.length(); i++) {
-			int plainChar = plaintext.charAt(i) - 'A';
-			int keyChar = keyword.charAt(i % keyword.length()) - 'A';
-			int cipherChar = ((plainChar + keyChar) % 26) + 'A';
-			ciphertext += (char) cipherChar;
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.ENCRYPT,
+				plaintext.length());
+		try {
+			byte[] letters = TextNormalizer.toIndices(plaintext);
+			if (letters.length > 0) {
+				new ShiftKernel(keyword, true).apply(letters, 0, letters, 0,
+						letters.length, 0);
+			}
+			return TextNormalizer.toString(letters, letters.length);
+		} finally {
+			Instrumentation.end(probe);
 		}
-
-		return ciphertext;
 	}
 
 	/**
@@ -51,22 +51,72 @@ public class Vigenere {
 	 * @return the decrypted version of ciphertext
 	 */
 	public static String decrypt(String ciphertext, String keyword) {
-		ciphertext = format(ciphertext);
-		keyword = format(keyword);
-		String plaintext = "";
-
-		for (int i = 0; i < ciphertext.length(); i++) {
-			int cipherChar = ciphertext.charAt(i) - 'A';
-			int keyChar = keyword.charAt(i % keyword.length()) - 'A';
-			int plainChar = ((cipherChar - keyChar) % 26);
-			if (plainChar < 0) {
-				plainChar += 26;
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.DECRYPT,
+				ciphertext.length());
+		try {
+			byte[] letters = TextNormalizer.toIndices(ciphertext);
+			if (letters.length > 0) {
+				new ShiftKernel(keyword, false).apply(letters, 0, letters, 0,
+						letters.length, 0);
 			}
-			plainChar += 'A';
-			plaintext += (char) plainChar;
+			return TextNormalizer.toString(letters, letters.length);
+		} finally {
+			Instrumentation.end(probe);
 		}
+	}
 
-		return plaintext;
+	/**
+	 * Encrypts a given plaintext message with a given keyword, leaving spaces,
+	 * punctuation and any other non-alphabetic characters in place and
+	 * keeping the case of each letter. Letters are recognized as by
+	 * {@link TextNormalizer}, so accented letters are shifted from their base
+	 * letter and lose their accent, and removing the other characters from
+	 * the result gives the same ciphertext as {@link #encrypt(String, String)}
+	 * up to case.
+	 * 
+	 * @param plaintext
+	 *            a plaintext string to be encoded
+	 * @param keyword
+	 *            a string to use in the encryption of plaintext
+	 * @return the encrypted version of plaintext with its formatting intact
+	 */
+	public static String encryptPreservingFormat(String plaintext,
+			String keyword) {
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.ENCRYPT,
+				plaintext.length());
+		try {
+			char[] text = plaintext.toCharArray();
+			new KeyStream(keyword, true).transformPreservingFormat(text, 0,
+					text.length);
+			return new String(text);
+		} finally {
+			Instrumentation.end(probe);
+		}
+	}
+
+	/**
+	 * Decrypts a given ciphertext message produced by
+	 * {@link #encryptPreservingFormat(String, String)}, leaving non-alphabetic
+	 * characters in place and keeping the case of each letter
+	 * 
+	 * @param ciphertext
+	 *            a ciphertext string to be decoded
+	 * @param keyword
+	 *            a string to use in the decryption of ciphertext
+	 * @return the decrypted version of ciphertext with its formatting intact
+	 */
+	public static String decryptPreservingFormat(String ciphertext,
+			String keyword) {
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.DECRYPT,
+				ciphertext.length());
+		try {
+			char[] text = ciphertext.toCharArray();
+			new KeyStream(keyword, false).transformPreservingFormat(text, 0,
+					text.length);
+			return new String(text);
+		} finally {
+			Instrumentation.end(probe);
+		}
 	}
 
 	/**
@@ -80,10 +130,32 @@ public class Vigenere {
 	public static int[] letterFrequency(String text) {
 		int[] frequencies = new int[26];
 
-		text = format(text);
-
 		for (int i = 0; i < text.length(); i++) {
-			frequencies[text.charAt(i) - 'A']++;
+			int letter = TextNormalizer.indexOf(text.charAt(i));
+			if (letter >= 0) {
+				frequencies[letter]++;
+			}
+		}
+
+		return frequencies;
+	}
+
+	/**
+	 * Calculates the number of occurrences of each letter in already
+	 * normalized text
+	 * 
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters to count
+	 * @return an integer array containing the number of occurrences of each
+	 *         letter
+	 */
+	public static int[] letterFrequency(byte[] letters, int length) {
+		int[] frequencies = new int[26];
+
+		for (int i = 0; i < length; i++) {
+			frequencies[letters[i]]++;
 		}
 
 		return frequencies;
@@ -98,7 +170,13 @@ public class Vigenere {
 	 * @see Vigenere#calcIC(int[])
 	 */
 	public static double calcIC(String text) {
-		return calcIC(letterFrequency(text));
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.CALC_IC,
+				text.length());
+		try {
+			return calcIC(letterFrequency(text));
+		} finally {
+			Instrumentation.end(probe);
+		}
 	}
 
 	/**
@@ -126,27 +204,52 @@ public class Vigenere {
 	}
 
 	/**
-	 * Estimates the keylength of a give string encrypted with a Vigenere cipher
+	 * Estimates the keylength of a give string encrypted with a Vigenere
+	 * cipher. The length of the text in the Friedman formula is its number of
+	 * letters, so spaces and punctuation do not skew the estimate.
 	 * 
 	 * @param text
 	 *            a string encrypted with a Vigenere cipher
 	 * @return the approximate key length of the key used to encrypt the text
+	 * @see Vigenere#estimateKeyLength(int[])
 	 */
 	public static double estimateKeyLength(String text) {
-		double ic = calcIC(text);
-		double top = 0.027 * text.length();
-		double bottom = (text.length() - 1) * ic - 0.038 * text.length()
-				+ 0.065;
+		Instrumentation.Probe probe = Instrumentation.begin(
+				Operation.ESTIMATE_KEY_LENGTH, text.length());
+		try {
+			return estimateKeyLength(letterFrequency(text));
+		} finally {
+			Instrumentation.end(probe);
+		}
+	}
+
+	/**
+	 * Estimates the keylength of a text encrypted with a Vigenere cipher from
+	 * its letter frequencies
+	 * 
+	 * @param frequencies
+	 *            an array containing the letter frequencies of a text
+	 * @return the approximate key length of the key used to encrypt the text
+	 * @see Vigenere#estimateKeyLength(String)
+	 */
+	public static double estimateKeyLength(int[] frequencies) {
+		int length = 0;
+		for (int i = 0; i < frequencies.length; i++) {
+			length += frequencies[i];
+		}
+		double ic = calcIC(frequencies);
+		double top = 0.027 * length;
+		double bottom = (length - 1) * ic - 0.038 * length + 0.065;
 		return top / bottom;
 	}
 
 	/**
 	 * Performs the kasiski test in order to calculate the length of the key
-	 * word used to encrypt a given ciphertext. Divides the text into its
-	 * 3-character {@link Substring}s, and counts the number of occurances of
-	 * each, storing each unique substring in a {@link HashMap}. After this, the
+	 * word used to encrypt a given ciphertext. Indexes the positions of every
+	 * 3-character substring in a {@link TrigramIndex}. After this, the
 	 * distances between substrings with multiple occurences are calculated, and
-	 * their factors are used to estimate the length of the keyword.
+	 * the candidate key lengths dividing them are counted by a
+	 * {@link FactorCounter} to estimate the length of the keyword.
 	 * 
 	 * @param text
 	 *            a string encrypted with a Vigenere cipher
@@ -155,52 +258,72 @@ public class Vigenere {
 	 * @param maxKeyLength
 	 *            the maximum length that may be returned for the key length
 	 * @return the estimated length of the key used to encrypt the text
-	 * @see Vigenere#estimateKeyLength(HashMap, int, int)
+	 * @see FactorCounter#estimateKeyLength()
 	 */
 	public static int kasiski(String text, int minKeyLength, int maxKeyLength) {
-		HashMap<String, Substring> substringMap = new HashMap<String, Substring>();
-		text = format(text);
-		String sub;
-
-		// Fill HashMap with all substrings
-		for (int i = 0; i < text.length() - 2; i++) {
-			sub = text.substring(i, i + 3);
-			if (substringMap.containsKey(sub)) {
-				substringMap.get(sub).addOccurance(i);
-			} else {
-				substringMap.put(sub, new Substring(sub, i));
-			}
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.KASISKI,
+				text.length());
+		try {
+			byte[] letters = TextNormalizer.toIndices(text);
+			return countTrigramDistances(letters, letters.length,
+					minKeyLength, maxKeyLength).estimateKeyLength();
+		} finally {
+			Instrumentation.end(probe);
 		}
+	}
 
-		// Convert HashMap to ArrayList for working with the values
-		ArrayList<Substring> substrings = new ArrayList<Substring>(
-				substringMap.values());
+	/**
+	 * Performs the kasiski test on already normalized text
+	 * 
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the text
+	 * @param minKeyLength
+	 *            the minimum length that may be returned for the key length
+	 * @param maxKeyLength
+	 *            the maximum length that may be returned for the key length
+	 * @return the estimated length of the key used to encrypt the text
+	 * @see Vigenere#kasiski(String, int, int)
+	 */
+	public static int kasiski(byte[] letters, int length, int minKeyLength,
+			int maxKeyLength) {
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.KASISKI,
+				length);
+		try {
+			// Analzye the frequency of all of the factors
+			return countTrigramDistances(letters, length, minKeyLength,
+					maxKeyLength).estimateKeyLength();
+		} finally {
+			Instrumentation.end(probe);
+		}
+	}
 
-		// Remove all substrings with only single occurrence
-		substrings = Substring.removeSingleOccurrenceSubstrings(substrings);
+	/**
+	 * Counts the key lengths dividing the distances between consecutive
+	 * occurrences of each repeated trigram, the data behind the kasiski test
+	 */
+	static FactorCounter countTrigramDistances(byte[] letters, int length,
+			int minKeyLength, int maxKeyLength) {
+		TrigramIndex index = new TrigramIndex(letters, length);
 
 		/*
-		 * Find the differences between positions of multiple occurrences ofthe
-		 * same substring and calculate the factors of each
+		 * Find the differences between positions of multiple occurrences of the
+		 * same substring and count the key lengths dividing each
 		 */
-		HashMap<Integer, Integer> factorOccurances = new HashMap<Integer, Integer>();
-		for (Substring substr : substrings) {
-			ArrayList<Integer> differences = substr.getDifferences(true);
-			for (Integer diff : differences) {
-				ArrayList<Integer> factors = calculateFactors(diff);
-				for (Integer fact : factors) {
-					if (factorOccurances.containsKey(fact)) {
-						Integer temp = factorOccurances.get(fact);
-						factorOccurances.put(fact, ++temp);
-					} else {
-						factorOccurances.put(fact, 1);
-					}
-				}
+		FactorCounter factorCounter = new FactorCounter(minKeyLength,
+				maxKeyLength);
+		for (int code = 0; code < TrigramIndex.TRIGRAM_COUNT; code++) {
+			if (code % 1024 == 0) {
+				ThreadPools.checkInterrupted(Thread.currentThread());
+			}
+			int count = index.getOccurrenceCount(code);
+			for (int i = 1; i < count; i++) {
+				factorCounter.add(index.getPosition(code, i)
+						- index.getPosition(code, i - 1));
 			}
 		}
-
-		// Analzye the frequency of all of the factors
-		return estimateKeyLength(factorOccurances, minKeyLength, maxKeyLength);
+		return factorCounter;
 	}
 
 	/**
@@ -288,35 +411,52 @@ public class Vigenere {
 	}
 
 	/**
-	 * Estimates the key used to encrypt ciphertext by splitting ciphertext into
-	 * a number of strings split based on keyLength and using a basic frequency
-	 * analysis to estimate the key used to generate them and combining to
-	 * estimate the key
+	 * Estimates the key used to encrypt ciphertext by counting the letters of
+	 * each of the keyLength columns of ciphertext and choosing, for each
+	 * column, the shift whose decryption best fits the letter frequencies of
+	 * English by the chi-squared statistic. A model named by the
+	 * {@value LanguageModel#MODEL_PROPERTY} system property is used instead
+	 * of English.
 	 * 
 	 * @param ciphertext
 	 *            a string encrypted with a key of length keyLength
 	 * @param keyLength
 	 *            length of the key used to encrypt ciphertext
 	 * @return an estimate of the key used to encrypt ciphertext
+	 * @see ChiSquaredKeySolver#estimateKey(String, int)
 	 */
 	public static String estimateKey(String ciphertext, int keyLength) {
-		String separatedCipher[] = new String[keyLength];
-		String key = "";
-
-		for (int i = 0; i < keyLength; i++) {
-			separatedCipher[i] = "";
-		}
-
-		for (int i = 0; i < ciphertext.length(); i++) {
-			separatedCipher[i % keyLength] += ciphertext.charAt(i);
+		Instrumentation.Probe probe = Instrumentation.begin(
+				Operation.ESTIMATE_KEY, ciphertext.length());
+		try {
+			return LanguageModel.getDefaultKeySolver().estimateKey(
+					ciphertext, keyLength).getKey();
+		} finally {
+			Instrumentation.end(probe);
 		}
+	}
 
-		for (int i = 0; i < keyLength; i++) {
-			int[] freq = letterFrequency(separatedCipher[i]);
-			key += (char) ((arrayMaxPos(freq) - 4) + 'A');
+	/**
+	 * Estimates the key used to encrypt already normalized ciphertext
+	 * 
+	 * @param letters
+	 *            letter indices (0-25) as produced by {@link TextNormalizer}
+	 * @param length
+	 *            the number of letters in the ciphertext
+	 * @param keyLength
+	 *            length of the key used to encrypt the ciphertext
+	 * @return an estimate of the key used to encrypt the ciphertext
+	 * @see Vigenere#estimateKey(String, int)
+	 */
+	public static String estimateKey(byte[] letters, int length, int keyLength) {
+		Instrumentation.Probe probe = Instrumentation.begin(
+				Operation.ESTIMATE_KEY, length);
+		try {
+			return LanguageModel.getDefaultKeySolver().estimateKey(letters,
+					length, keyLength).getKey();
+		} finally {
+			Instrumentation.end(probe);
 		}
-
-		return key;
 	}
 
 	/**
@@ -339,7 +479,8 @@ public class Vigenere {
 	/**
 	 * Formats a given string for use with encryption and decryption methods.
 	 * Removes all non-alphabetic characters, and capitalizes all remaining
-	 * characters.
+	 * characters. Accented letters are reduced to their base letter, and
+	 * letters with no equivalent in A-Z are removed.
 	 * 
 	 * @param text
 	 *            a string to format
@@ -347,6 +488,12 @@ public class Vigenere {
 	 *         methods
 	 */
 	public static String format(String text) {
-		return text.toUpperCase().replaceAll("[^\\p{L}]", "");
+		Instrumentation.Probe probe = Instrumentation.begin(Operation.FORMAT,
+				text.length());
+		try {
+			return TextNormalizer.format(text);
+		} finally {
+			Instrumentation.end(probe);
+		}
 	}
 }
@@ -0,0 +1,131 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: VigenereInputStream.java
+ *
+ * An input stream that encrypts or decrypts the bytes read from an underlying
+ * stream with the Vigenere cipher. The key phase is carried across reads, so
+ * for ASCII text the output is identical to formatting and encrypting the
+ * whole stream at once while only ever holding a single buffer in memory.
+ * Accented letters, which formatting folds, are dropped instead. In format
+ * preserving mode non-letters are passed through in place and the case of
+ * each letter is kept. Only ASCII letters are treated as letters, as for every
+ * byte oriented path (see {@link KeyStream}).
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class VigenereInputStream extends FilterInputStream {
+
+	private final KeyStream keyStream;
+	private final boolean preserveFormat;
+	private final byte[] single = new byte[1];
+
+	/**
+	 * Constructs a new stream reading from in
+	 *
+	 * @param in
+	 *            the stream supplying the plaintext or ciphertext
+	 * @param keyword
+	 *            a string to use in the encryption or decryption
+	 * @param encrypt
+	 *            true to encrypt the bytes read from in, false to decrypt them
+	 */
+	public VigenereInputStream(InputStream in, String keyword, boolean encrypt) {
+		this(in, keyword, encrypt, false);
+	}
+
+	/**
+	 * Constructs a new stream reading from in, optionally preserving the
+	 * format of the text
+	 *
+	 * @param in
+	 *            the stream supplying the plaintext or ciphertext
+	 * @param keyword
+	 *            a string to use in the encryption or decryption
+	 * @param encrypt
+	 *            true to encrypt the bytes read from in, false to decrypt them
+	 * @param preserveFormat
+	 *            true to pass non-letters through and keep the case of
+	 *            letters, false to drop non-letters and upper case the rest
+	 * @see Vigenere#encryptPreservingFormat(String, String)
+	 */
+	public VigenereInputStream(InputStream in, String keyword,
+			boolean encrypt, boolean preserveFormat) {
+		super(in);
+		keyStream = new KeyStream(keyword, encrypt);
+		this.preserveFormat = preserveFormat;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int n = read(single, 0, 1);
+		// Bytes passed through in format preserving mode may be negative
+		return n == -1 ? -1 : single[0] & 0xFF;
+	}
+
+	/**
+	 * Reads the next letters from the underlying stream, skipping over any
+	 * non-alphabetic bytes unless the format is preserved. Blocks until at
+	 * least one byte is available or the end of the stream is reached.
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int n;
+		do {
+			n = in.read(b, off, len);
+			if (n == -1) {
+				return -1;
+			}
+			if (preserveFormat) {
+				keyStream.transformPreservingFormat(b, off, n);
+			} else {
+				n = keyStream.transform(b, off, n);
+			}
+		} while (n == 0);
+		return n;
+	}
+
+	/**
+	 * Skips bytes of the transformed output, keeping the key phase in step
+	 * with the underlying stream
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buf = new byte[(int) Math.min(n, 4096)];
+		long remaining = n;
+		while (remaining > 0) {
+			int read = read(buf, 0, (int) Math.min(remaining, buf.length));
+			if (read == -1) {
+				break;
+			}
+			remaining -= read;
+		}
+		return n - remaining;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
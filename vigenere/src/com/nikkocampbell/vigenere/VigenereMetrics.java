@@ -0,0 +1,162 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: VigenereMetrics.java
+ *
+ * Collects call counts, input sizes, latency histograms and allocation for
+ * each {@link Operation}, and publishes them over JMX. Counters are striped
+ * with LongAdder so concurrent operations do not contend on them.
+ *
+ * Run with -Dvigenere.metrics=true to install the metrics at startup.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class VigenereMetrics implements VigenereMetricsMXBean,
+		OperationListener {
+
+	/**
+	 * The name the metrics are registered under
+	 */
+	public static final String OBJECT_NAME = "com.nikkocampbell.vigenere:type=VigenereMetrics";
+
+	private static final int BUCKETS = 64;
+
+	private static VigenereMetrics installed;
+
+	private final Counters[] counters;
+
+	/**
+	 * Constructs empty metrics. They record nothing until added as a listener
+	 * with {@link Instrumentation#addListener(OperationListener)}.
+	 */
+	public VigenereMetrics() {
+		Operation[] operations = Operation.values();
+		counters = new Counters[operations.length];
+		for (int i = 0; i < operations.length; i++) {
+			counters[i] = new Counters();
+		}
+	}
+
+	/**
+	 * Starts recording operations and registers the metrics with the platform
+	 * MBean server. Calling this again returns the metrics already installed.
+	 *
+	 * @return the installed metrics
+	 */
+	public static synchronized VigenereMetrics install() {
+		if (installed == null) {
+			VigenereMetrics metrics = new VigenereMetrics();
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				server.registerMBean(metrics, new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				throw new IllegalStateException(e);
+			}
+			Instrumentation.addListener(metrics);
+			installed = metrics;
+		}
+		return installed;
+	}
+
+	/**
+	 * Installs the metrics if the system property vigenere.metrics is true
+	 */
+	public static void installIfRequested() {
+		if (Boolean.getBoolean("vigenere.metrics")) {
+			install();
+		}
+	}
+
+	@Override
+	public void operationCompleted(Operation operation, long inputLength,
+			long nanos, long allocatedBytes) {
+		Counters c = counters[operation.ordinal()];
+		c.calls.increment();
+		c.characters.add(inputLength);
+		c.nanos.add(nanos);
+		if (allocatedBytes >= 0) {
+			c.allocated.add(allocatedBytes);
+		} else {
+			c.unmeasured.increment();
+		}
+		// Bucket i holds latencies from 2^i to 2^(i+1) nanoseconds
+		c.latencies[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))]
+				.increment();
+	}
+
+	/**
+	 * Returns the statistics of one operation
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return a snapshot of its statistics
+	 */
+	public OperationStats getStats(Operation operation) {
+		Counters c = counters[operation.ordinal()];
+		long[] histogram = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram[i] = c.latencies[i].sum();
+		}
+		return new OperationStats(operation.name(), c.calls.sum(),
+				c.characters.sum(), c.nanos.sum(),
+				c.unmeasured.sum() > 0 ? -1 : c.allocated.sum(), histogram);
+	}
+
+	@Override
+	public List<OperationStats> getOperationStats() {
+		List<OperationStats> stats = new ArrayList<OperationStats>();
+		for (Operation operation : Operation.values()) {
+			if (counters[operation.ordinal()].calls.sum() > 0) {
+				stats.add(getStats(operation));
+			}
+		}
+		return stats;
+	}
+
+	@Override
+	public long getTotalCallCount() {
+		long total = 0;
+		for (Counters c : counters) {
+			total += c.calls.sum();
+		}
+		return total;
+	}
+
+	@Override
+	public void reset() {
+		for (Counters c : counters) {
+			c.calls.reset();
+			c.characters.reset();
+			c.nanos.reset();
+			c.allocated.reset();
+			c.unmeasured.reset();
+			for (LongAdder latency : c.latencies) {
+				latency.reset();
+			}
+		}
+	}
+
+	private static class Counters {
+		final LongAdder calls = new LongAdder();
+		final LongAdder characters = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder allocated = new LongAdder();
+		final LongAdder unmeasured = new LongAdder();
+		final LongAdder[] latencies = new LongAdder[BUCKETS];
+
+		Counters() {
+			for (int i = 0; i < BUCKETS; i++) {
+				latencies[i] = new LongAdder();
+			}
+		}
+	}
+}
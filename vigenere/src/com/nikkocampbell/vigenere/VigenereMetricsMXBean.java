@@ -0,0 +1,30 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: VigenereMetricsMXBean.java
+ *
+ * The management interface of {@link VigenereMetrics}, viewable in JConsole or
+ * any other JMX client under the name
+ * com.nikkocampbell.vigenere:type=VigenereMetrics.
+ */
+package com.nikkocampbell.vigenere;
+
+import java.util.List;
+
+public interface VigenereMetricsMXBean {
+
+	/**
+	 * @return the statistics of every operation that has been called
+	 */
+	List<OperationStats> getOperationStats();
+
+	/**
+	 * @return the total number of instrumented calls
+	 */
+	long getTotalCallCount();
+
+	/**
+	 * Clears all statistics
+	 */
+	void reset();
+}
@@ -0,0 +1,94 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: VigenereOutputStream.java
+ *
+ * An output stream that encrypts or decrypts the bytes written to it with the
+ * Vigenere cipher before passing them on to an underlying stream. The key
+ * phase is carried across writes, so for ASCII text the output is identical
+ * to formatting and encrypting the whole message at once. Accented letters,
+ * which formatting folds, are dropped instead. In format preserving mode
+ * non-letters are passed through in place and the case of each letter is
+ * kept. Only ASCII letters are treated as letters, as for every byte oriented
+ * path (see {@link KeyStream}).
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class VigenereOutputStream extends FilterOutputStream {
+
+	private final KeyStream keyStream;
+	private final boolean preserveFormat;
+	private final byte[] buffer = new byte[8192];
+	private final byte[] single = new byte[1];
+
+	/**
+	 * Constructs a new stream writing to out
+	 *
+	 * @param out
+	 *            the stream to receive the ciphertext or plaintext
+	 * @param keyword
+	 *            a string to use in the encryption or decryption
+	 * @param encrypt
+	 *            true to encrypt the bytes written, false to decrypt them
+	 */
+	public VigenereOutputStream(OutputStream out, String keyword,
+			boolean encrypt) {
+		this(out, keyword, encrypt, false);
+	}
+
+	/**
+	 * Constructs a new stream writing to out, optionally preserving the format
+	 * of the text
+	 *
+	 * @param out
+	 *            the stream to receive the ciphertext or plaintext
+	 * @param keyword
+	 *            a string to use in the encryption or decryption
+	 * @param encrypt
+	 *            true to encrypt the bytes written, false to decrypt them
+	 * @param preserveFormat
+	 *            true to pass non-letters through and keep the case of
+	 *            letters, false to drop non-letters and upper case the rest
+	 * @see Vigenere#encryptPreservingFormat(String, String)
+	 */
+	public VigenereOutputStream(OutputStream out, String keyword,
+			boolean encrypt, boolean preserveFormat) {
+		super(out);
+		keyStream = new KeyStream(keyword, encrypt);
+		this.preserveFormat = preserveFormat;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		single[0] = (byte) b;
+		write(single, 0, 1);
+	}
+
+	/**
+	 * Transforms b through an internal buffer, leaving the caller's array
+	 * untouched. Non-alphabetic bytes are dropped unless the format is
+	 * preserved.
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int chunk = Math.min(len, buffer.length);
+			System.arraycopy(b, off, buffer, 0, chunk);
+			int n = chunk;
+			if (preserveFormat) {
+				keyStream.transformPreservingFormat(buffer, 0, chunk);
+			} else {
+				n = keyStream.transform(buffer, 0, chunk);
+			}
+			if (n > 0) {
+				out.write(buffer, 0, n);
+			}
+			off += chunk;
+			len -= chunk;
+		}
+	}
+}
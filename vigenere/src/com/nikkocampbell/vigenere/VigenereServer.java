@@ -0,0 +1,415 @@
+/**
+ * Author: Nikko Campbell
+ * StudentID: 0505046
+ * File: VigenereServer.java
+ *
+ * A local HTTP service exposing the cipher and its cryptanalysis, so that
+ * many jobs can share one warmed up JVM instead of starting a new one each.
+ * Requests are handled on virtual threads where available. Every endpoint
+ * takes POST requests whose body is UTF-8 text and whose options are given in
+ * the query string:
+ *
+ * POST /encrypt?key=K[&preserve=true] the ciphertext as text/plain
+ * POST /decrypt?key=K[&preserve=true] the plaintext as text/plain
+ * POST /analyze[?min=n&max=n] key length estimates as JSON
+ * POST /crack[?min=n&max=n] the full cryptanalysis as JSON
+ * POST /batch[?min=n&max=n] one ciphertext per line, cracked in parallel
+ * and returned as JSON Lines in the same order
+ *
+ * Bodies over the size limit are refused with 413, and requests arriving
+ * while the in-flight limit is reached are refused with 503.
+ *
+ * Usage: VigenereServer [-p port] [-c maxInFlight] [-b maxBodyBytes]
+ */
+package com.nikkocampbell.vigenere;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class VigenereServer {
+
+	private static final int DEFAULT_MIN_KEY_LENGTH = 1;
+	private static final int DEFAULT_MAX_KEY_LENGTH = 20;
+	private static final int SPARE_THREADS = 4;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ForkJoinPool workers;
+	private final Semaphore inFlight;
+	private final int maxBodyBytes;
+	private final AnalysisCache analysisCache = new AnalysisCache();
+
+	/**
+	 * Constructs a server, which does not accept requests until started
+	 *
+	 * @param address
+	 *            the address to listen on
+	 * @param maxInFlight
+	 *            the maximum number of requests processed at once
+	 * @param maxBodyBytes
+	 *            the largest request body accepted
+	 * @param workers
+	 *            the pool the ciphertexts of batch requests are cracked on
+	 * @throws IOException
+	 *             if the address cannot be bound
+	 */
+	public VigenereServer(InetSocketAddress address, int maxInFlight,
+			int maxBodyBytes, ForkJoinPool workers) throws IOException {
+		this.maxBodyBytes = maxBodyBytes;
+		this.workers = workers;
+		inFlight = new Semaphore(maxInFlight);
+		// Without virtual threads, spare threads are needed to send the 503s
+		executor = ThreadPools.newTaskExecutor(maxInFlight + SPARE_THREADS);
+		server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+
+		server.createContext("/encrypt", new Endpoint() {
+			@Override
+			protected void handle(HttpExchange exchange, String body,
+					Map<String, String> params) throws IOException {
+				String key = required(params, "key");
+				send(exchange, 200, "text/plain", "true".equals(params
+						.get("preserve")) ? Vigenere.encryptPreservingFormat(
+						body, key) : Vigenere.encrypt(body, key));
+			}
+		});
+		server.createContext("/decrypt", new Endpoint() {
+			@Override
+			protected void handle(HttpExchange exchange, String body,
+					Map<String, String> params) throws IOException {
+				String key = required(params, "key");
+				send(exchange, 200, "text/plain", "true".equals(params
+						.get("preserve")) ? Vigenere.decryptPreservingFormat(
+						body, key) : Vigenere.decrypt(body, key));
+			}
+		});
+		server.createContext("/analyze", new Endpoint() {
+			@Override
+			protected void handle(HttpExchange exchange, String body,
+					Map<String, String> params) throws IOException {
+				send(exchange, 200, "application/json", analyze(body,
+						minKeyLength(params), maxKeyLength(params)));
+			}
+		});
+		server.createContext("/crack", new Endpoint() {
+			@Override
+			protected void handle(HttpExchange exchange, String body,
+					Map<String, String> params) throws IOException {
+				send(exchange, 200, "application/json", CrackResult.crack(
+						"1", body, minKeyLength(params), maxKeyLength(params))
+						.toJson());
+			}
+		});
+		server.createContext("/batch", new Endpoint() {
+			@Override
+			protected void handle(HttpExchange exchange, String body,
+					Map<String, String> params) throws IOException {
+				batch(exchange, body, minKeyLength(params),
+						maxKeyLength(params));
+			}
+		});
+	}
+
+	/**
+	 * Starts accepting requests
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests and waits for those in progress to finish
+	 *
+	 * @param delay
+	 *            the maximum number of seconds to wait
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the address the server is listening on
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	private String analyze(String ciphertext, int minKeyLength,
+			int maxKeyLength) {
+		// Normalized and hashed once for every answer
+		byte[] letters = TextNormalizer.toIndices(ciphertext);
+		AnalysisCache.Analysis analysis = analysisCache.analyze(letters,
+				letters.length);
+		KeyLengthProfile profile = analysis.getProfile();
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\"length\":").append(letters.length);
+		json.append(",\"ic\":");
+		Json.number(json, Vigenere.calcIC(Vigenere.letterFrequency(letters,
+				letters.length)));
+		json.append(",\"kasiskiKeyLength\":").append(
+				analysis.kasiski(minKeyLength, maxKeyLength));
+		json.append(",\"friedmanKeyLength\":");
+		Json.number(json, analysis.estimateKeyLength());
+		json.append(",\"icKeyLength\":").append(
+				profile.getBestKeyLength(minKeyLength, maxKeyLength));
+		json.append(",\"icConfidence\":");
+		Json.number(json, profile.getConfidence(minKeyLength, maxKeyLength));
+		return json.append('}').toString();
+	}
+
+	/**
+	 * Cracks each line of the body on the worker pool, streaming the results
+	 * back in order. Only a window of lines proportional to the pool size is
+	 * in progress at once, so a large batch cannot flood the pool. Once the
+	 * headers are sent a line that fails to crack is reported in its own
+	 * error record, as the status can no longer change.
+	 */
+	private void batch(HttpExchange exchange, String body,
+			final int minKeyLength, final int maxKeyLength) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type",
+				"application/x-ndjson; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		int window = 2 * workers.getParallelism();
+		ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+		try (Writer out = new OutputStreamWriter(exchange.getResponseBody(),
+				StandardCharsets.UTF_8)) {
+			String[] lines = body.split("\r?\n");
+			for (int i = 0; i < lines.length; i++) {
+				final String line = lines[i];
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				final String id = Integer.toString(i + 1);
+				pending.add(workers.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						try {
+							return CrackResult.crack(id, line, minKeyLength,
+									maxKeyLength).toJson();
+						} catch (Throwable e) {
+							return Json.error(id, e);
+						}
+					}
+				}));
+				if (pending.size() >= window) {
+					write(out, pending.poll());
+				}
+			}
+			while (!pending.isEmpty()) {
+				write(out, pending.poll());
+			}
+		} finally {
+			for (Future<String> result : pending) {
+				result.cancel(false);
+			}
+		}
+	}
+
+	private static void write(Writer out, Future<String> result)
+			throws IOException {
+		try {
+			out.write(result.get());
+			out.write('\n');
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static int minKeyLength(Map<String, String> params) {
+		return intParam(params, "min", DEFAULT_MIN_KEY_LENGTH);
+	}
+
+	private static int maxKeyLength(Map<String, String> params) {
+		return intParam(params, "max", DEFAULT_MAX_KEY_LENGTH);
+	}
+
+	private static int intParam(Map<String, String> params, String name,
+			int defaultValue) {
+		String value = params.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be a number");
+		}
+	}
+
+	private static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("missing parameter " + name);
+		}
+		return value;
+	}
+
+	private static void send(HttpExchange exchange, int status,
+			String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+
+	/**
+	 * The checks shared by every endpoint: the method, the in-flight limit and
+	 * the body size limit. Invalid parameters are reported with 400 and any
+	 * other failure with 500, unless the endpoint has already started its
+	 * response, which is then cut short.
+	 */
+	private abstract class Endpoint implements HttpHandler {
+
+		protected abstract void handle(HttpExchange exchange, String body,
+				Map<String, String> params) throws IOException;
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (!"POST".equals(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().set("Allow", "POST");
+					send(exchange, 405, "text/plain", "POST required\n");
+					return;
+				}
+				if (!inFlight.tryAcquire()) {
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					send(exchange, 503, "text/plain", "server busy\n");
+					return;
+				}
+				try {
+					String body = readBody(exchange);
+					if (body == null) {
+						send(exchange, 413, "text/plain", "body exceeds "
+								+ maxBodyBytes + " bytes\n");
+						return;
+					}
+					Map<String, String> params;
+					try {
+						params = parseQuery(exchange.getRequestURI()
+								.getRawQuery());
+					} catch (IllegalArgumentException e) {
+						send(exchange, 400, "text/plain", "bad query\n");
+						return;
+					}
+					try {
+						handle(exchange, body, params);
+					} catch (RuntimeException e) {
+						if (exchange.getResponseCode() != -1) {
+							throw e;
+						} else if (e instanceof IllegalArgumentException) {
+							send(exchange, 400, "text/plain", e.getMessage()
+									+ "\n");
+						} else {
+							send(exchange, 500, "text/plain", e + "\n");
+						}
+					}
+				} finally {
+					inFlight.release();
+				}
+			} finally {
+				exchange.close();
+			}
+		}
+
+		/*
+		 * Returns null as soon as the body is known to exceed the limit,
+		 * without reading the rest of it
+		 */
+		private String readBody(HttpExchange exchange) throws IOException {
+			String declared = exchange.getRequestHeaders().getFirst(
+					"Content-Length");
+			if (declared != null) {
+				try {
+					if (Long.parseLong(declared.trim()) > maxBodyBytes) {
+						return null;
+					}
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			try (InputStream in = exchange.getRequestBody()) {
+				int n;
+				while ((n = in.read(buf)) != -1) {
+					if (body.size() + n > maxBodyBytes) {
+						return null;
+					}
+					body.write(buf, 0, n);
+				}
+			}
+			return new String(body.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		VigenereMetrics.installIfRequested();
+		int port = 8080;
+		int maxInFlight = Runtime.getRuntime().availableProcessors() * 4;
+		int maxBodyBytes = 16 * 1024 * 1024;
+		for (int i = 0; i < args.length; i++) {
+			if ("-p".equals(args[i]) && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else if ("-c".equals(args[i]) && i + 1 < args.length) {
+				maxInFlight = Integer.parseInt(args[++i]);
+			} else if ("-b".equals(args[i]) && i + 1 < args.length) {
+				maxBodyBytes = Integer.parseInt(args[++i]);
+			} else {
+				System.err.println("Usage: VigenereServer [-p port] "
+						+ "[-c maxInFlight] [-b maxBodyBytes]");
+				System.exit(2);
+			}
+		}
+
+		// Bound to loopback: the service is meant for local jobs only
+		VigenereServer server = new VigenereServer(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), maxInFlight,
+				maxBodyBytes, ForkJoinPool.commonPool());
+		server.start();
+		System.err.println("Listening on " + server.getAddress());
+	}
+}
@@ -11,18 +11,27 @@ package com.nikkocampbell.vigenere;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
@@ -30,6 +39,10 @@ import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
 
 import com.jgoodies.forms.factories.FormFactory;
 import com.jgoodies.forms.layout.ColumnSpec;
@@ -41,19 +54,31 @@ public class VigenereTool {
 
 	private JFrame frmVigenereTool;
 	private JTextField keywordTextField;
-	private JTextArea plaintextArea, ciphertextArea, ciphertextArea2,
-			plaintextArea2;
+	private JTextArea plaintextArea, ciphertextArea, ciphertextArea2;
+	// Show results too large for the text areas above
+	private LargeTextPane plaintextPane, ciphertextPane;
+	private PagedTextView plaintextView2;
 	private final ButtonGroup buttonGroup = new ButtonGroup();
 	private JRadioButton encryptRadioButton, decryptRadioButton;
+	private JCheckBox liveCheckBox;
+	private LiveCipher liveCipher;
 	private JComboBox<String> maxKeyLengthComboBox, minKeyLengthComboBox;
 	private JTextField txtKeyLengthKasiski;
 	private JTextField txtKeyLengthEqn;
+	// The profile of the text in ciphertextArea2, until the text is edited
+	private KeyLengthProfile keyLengthProfile;
+	// Counts edits to the ciphertext, so a profile of older text is dropped
+	private int ciphertextEdits;
 	private JTextField keyField;
+	private JProgressBar progressBar;
+	private CipherTask<?> currentTask;
+	private final AnalysisCache analysisCache = new AnalysisCache();
 
 	/**
 	 * Launch the application.
 	 */
 	public static void main(String[] args) {
+		VigenereMetrics.installIfRequested();
 		EventQueue.invokeLater(new Runnable() {
 			public void run() {
 				try {
@@ -85,6 +110,11 @@ public class VigenereTool {
 		JTabbedPane tabbedPane = new JTabbedPane(JTabbedPane.TOP);
 		frmVigenereTool.getContentPane().add(tabbedPane, BorderLayout.CENTER);
 
+		progressBar = new JProgressBar();
+		progressBar.setStringPainted(true);
+		progressBar.setString("");
+		frmVigenereTool.getContentPane().add(progressBar, BorderLayout.SOUTH);
+
 		JPanel encyrptDecryptPanel = new JPanel();
 		tabbedPane.addTab("Encrypt/Decrypt", null, encyrptDecryptPanel, null);
 		tabbedPane.setEnabledAt(0, true);
@@ -111,10 +141,10 @@ public class VigenereTool {
 		plaintextArea.setRows(5);
 		plaintextArea.setColumns(30);
 
-		JScrollPane plaintextScrollPane = new JScrollPane(plaintextArea);
-		plaintextScrollPane
+		plaintextPane = new LargeTextPane(plaintextArea);
+		plaintextPane
 				.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-		panel.add(plaintextScrollPane, "1, 2, center, center");
+		panel.add(plaintextPane, "1, 2, center, center");
 
 		JLabel keywordLabel = new JLabel("Keyword");
 		panel.add(keywordLabel, "1, 3, left, center");
@@ -123,6 +153,22 @@ public class VigenereTool {
 		keywordTextField.setHorizontalAlignment(SwingConstants.CENTER);
 		panel.add(keywordTextField, "1, 4, center, center");
 		keywordTextField.setColumns(30);
+		keywordTextField.getDocument().addDocumentListener(
+				new DocumentListener() {
+					@Override
+					public void insertUpdate(DocumentEvent e) {
+						updateLiveCipher();
+					}
+
+					@Override
+					public void removeUpdate(DocumentEvent e) {
+						updateLiveCipher();
+					}
+
+					@Override
+					public void changedUpdate(DocumentEvent e) {
+					}
+				});
 
 		JLabel ciphertextLabel = new JLabel("Ciphertext");
 		panel.add(ciphertextLabel, "1, 5, left, center");
@@ -134,8 +180,8 @@ public class VigenereTool {
 		ciphertextArea.setRows(5);
 		ciphertextArea.setColumns(30);
 
-		JScrollPane ciphertextScrollPane = new JScrollPane(ciphertextArea);
-		panel.add(ciphertextScrollPane, "1, 6, center, center");
+		ciphertextPane = new LargeTextPane(ciphertextArea);
+		panel.add(ciphertextPane, "1, 6, center, center");
 
 		JPanel EncryptDecryptOptionPanel = new JPanel();
 		panel.add(EncryptDecryptOptionPanel, "1, 8, center, default");
@@ -151,11 +197,28 @@ public class VigenereTool {
 		buttonGroup.add(decryptRadioButton);
 		EncryptDecryptOptionPanel.add(decryptRadioButton);
 
+		liveCheckBox = new JCheckBox("Live");
+		liveCheckBox
+				.setToolTipText("Update the other text as you type, keeping spaces and punctuation");
+		EncryptDecryptOptionPanel.add(liveCheckBox);
+
+		ActionListener liveListener = new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				updateLiveCipher();
+			}
+		};
+		encryptRadioButton.addActionListener(liveListener);
+		decryptRadioButton.addActionListener(liveListener);
+		liveCheckBox.addActionListener(liveListener);
+
 		JButton btnGo = new JButton("GO!");
 		btnGo.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent arg0) {
-				if (encryptRadioButton.isSelected()) {
+				if (liveCheckBox.isSelected()) {
+					updateLiveCipher();
+				} else if (encryptRadioButton.isSelected()) {
 					encrypt();
 				} else {
 					decrypt();
@@ -196,6 +259,24 @@ public class VigenereTool {
 		ciphertextArea2.setTabSize(4);
 		ciphertextArea2.setRows(5);
 		ciphertextArea2.setColumns(30);
+		ciphertextArea2.getDocument().addDocumentListener(
+				new DocumentListener() {
+					@Override
+					public void insertUpdate(DocumentEvent e) {
+						ciphertextEdits++;
+						keyLengthProfile = null;
+					}
+
+					@Override
+					public void removeUpdate(DocumentEvent e) {
+						ciphertextEdits++;
+						keyLengthProfile = null;
+					}
+
+					@Override
+					public void changedUpdate(DocumentEvent e) {
+					}
+				});
 		ciphertextScrollPane2.setViewportView(ciphertextArea2);
 
 		JPanel keyLengthPanel = new JPanel();
@@ -226,13 +307,22 @@ public class VigenereTool {
 		maxKeyLengthComboBox.setSelectedIndex(9);
 		keyLengthPanel.add(maxKeyLengthComboBox);
 
+		ActionListener rangeListener = new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (keyLengthProfile != null) {
+					showKasiskiKeyLength();
+				}
+			}
+		};
+		minKeyLengthComboBox.addActionListener(rangeListener);
+		maxKeyLengthComboBox.addActionListener(rangeListener);
+
 		JButton estimateKeyLengthBtn = new JButton("Estimate Key Length");
 		estimateKeyLengthBtn.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent arg0) {
-				performKasiskiTest();
-				performICKeylengthTest();
-
+				estimateKeyLength();
 			}
 		});
 		panel_1.add(estimateKeyLengthBtn, "1, 6, center, default");
@@ -256,9 +346,7 @@ public class VigenereTool {
 		estimateKeyBtn.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent arg0) {
-				keyField.setText(Vigenere.estimateKey(
-						ciphertextArea2.getText(),
-						Integer.parseInt(txtKeyLengthKasiski.getText())));
+				estimateKey();
 			}
 		});
 		panel_1.add(estimateKeyBtn, "1, 13, center, default");
@@ -285,46 +373,237 @@ public class VigenereTool {
 		JScrollPane plaintextScrollPane2 = new JScrollPane();
 		panel_1.add(plaintextScrollPane2, "1, 21, center, top");
 
-		plaintextArea2 = new JTextArea();
-		plaintextArea2.setLineWrap(true);
-		plaintextArea2.setWrapStyleWord(true);
-		plaintextArea2.setTabSize(4);
-		plaintextArea2.setRows(5);
-		plaintextArea2.setColumns(30);
-		plaintextScrollPane2.setViewportView(plaintextArea2);
+		// Decrypted on demand, so large results do not stall the UI
+		plaintextView2 = new PagedTextView(5, 30);
+		plaintextScrollPane2.setViewportView(plaintextView2);
 
 	}
 
 	private void encrypt() {
-		ciphertextArea.setText(Vigenere.encrypt(plaintextArea.getText(),
-				keywordTextField.getText()));
+		final String plaintext = plaintextPane.getText();
+		final String keyword = keywordTextField.getText();
+		runTask("Encrypting", new CipherTask<String>() {
+			@Override
+			protected String doInBackground() {
+				return Vigenere.encrypt(plaintext, keyword);
+			}
+
+			@Override
+			protected void succeeded(String ciphertext) {
+				ciphertextPane.setText(ciphertext);
+			}
+		});
 	}
 
 	private void decrypt() {
-		plaintextArea.setText(Vigenere.decrypt(ciphertextArea.getText(),
-				keywordTextField.getText()));
+		final String ciphertext = ciphertextPane.getText();
+		final String keyword = keywordTextField.getText();
+		runTask("Decrypting", new CipherTask<String>() {
+			@Override
+			protected String doInBackground() {
+				return Vigenere.decrypt(ciphertext, keyword);
+			}
+
+			@Override
+			protected void succeeded(String plaintext) {
+				plaintextPane.setText(plaintext);
+			}
+		});
+	}
+
+	/**
+	 * Stops mirroring edits between the plaintext and ciphertext, then starts
+	 * again in the selected direction with the current keyword if live mode
+	 * is on. Nothing is mirrored while the keyword has no letters. The
+	 * mirrored text cannot be edited while it follows the other, as an edit
+	 * to it would not match the letters the live cipher counts there. Large
+	 * results are moved into the text areas first, as the live cipher follows
+	 * their documents.
+	 */
+	private void updateLiveCipher() {
+		if (liveCipher != null) {
+			liveCipher.stop();
+			liveCipher = null;
+		}
+		plaintextArea.setEditable(true);
+		ciphertextArea.setEditable(true);
+		if (!liveCheckBox.isSelected()) {
+			return;
+		}
+		plaintextPane.edit();
+		ciphertextPane.edit();
+		boolean encrypt = encryptRadioButton.isSelected();
+		JTextArea source = encrypt ? plaintextArea : ciphertextArea;
+		JTextArea target = encrypt ? ciphertextArea : plaintextArea;
+		try {
+			liveCipher = new LiveCipher(source.getDocument(),
+					(AbstractDocument) target.getDocument(),
+					keywordTextField.getText(), encrypt);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		liveCipher.start();
+		target.setEditable(false);
 	}
 
 	private void crpytanalysisDecrypt() {
-		plaintextArea2.setText(Vigenere.decrypt(ciphertextArea2.getText(),
-				keyField.getText()));
+		final String ciphertext = ciphertextArea2.getText();
+		final String keyword = keyField.getText();
+		runTask("Decrypting", new CipherTask<TextSource>() {
+			@Override
+			protected TextSource doInBackground() {
+				return new DecryptedText(ciphertext, keyword);
+			}
+
+			@Override
+			protected void succeeded(TextSource plaintext) {
+				plaintextView2.setSource(plaintext);
+			}
+		});
+	}
+
+	private void estimateKey() {
+		final String ciphertext = ciphertextArea2.getText();
+		final int keyLength;
+		try {
+			keyLength = Integer.parseInt(txtKeyLengthKasiski.getText().trim());
+		} catch (NumberFormatException e) {
+			showError("Key length must be a number");
+			return;
+		}
+		runTask("Estimating key", new CipherTask<String>() {
+			@Override
+			protected String doInBackground() {
+				return analysisCache.estimateKey(ciphertext, keyLength,
+						progress()).getKey();
+			}
+
+			@Override
+			protected void succeeded(String key) {
+				keyField.setText(key);
+			}
+		});
+	}
+
+	/**
+	 * Profiles every key length for the Kasiski test, then runs the Friedman
+	 * test, reporting progress as the text is scanned. The profile is kept so
+	 * that changing the key length range afterwards is answered without
+	 * another task, unless the text was edited while the task ran.
+	 */
+	private void estimateKeyLength() {
+		final String ciphertext = ciphertextArea2.getText();
+		final int edits = ciphertextEdits;
+		runTask("Estimating key length", new CipherTask<KeyLengthProfile>() {
+			private double friedman;
+
+			@Override
+			protected KeyLengthProfile doInBackground() {
+				KeyLengthProfile profile = analysisCache.getProfile(ciphertext,
+						progress());
+				friedman = analysisCache.estimateKeyLength(ciphertext);
+				return profile;
+			}
+
+			@Override
+			protected void succeeded(KeyLengthProfile profile) {
+				if (edits != ciphertextEdits) {
+					// The ciphertext changed while it was being profiled
+					return;
+				}
+				keyLengthProfile = profile;
+				showKasiskiKeyLength();
+				txtKeyLengthEqn.setText(Double.toString(friedman));
+			}
+		});
 	}
 
-	private void performKasiskiTest() {
-		int minKeyLength = minKeyLengthComboBox.getSelectedIndex() + 1;
-		int maxKeyLength = maxKeyLengthComboBox.getSelectedIndex() + 1;
-		if (minKeyLength > maxKeyLength) {
-			minKeyLength = 1;
-			maxKeyLength = 10;
+	/**
+	 * Shows the Kasiski test result from the current profile for the range
+	 * selected in the combo boxes, or 1 to 10 if the range is empty
+	 */
+	private void showKasiskiKeyLength() {
+		int min = minKeyLengthComboBox.getSelectedIndex() + 1;
+		int max = maxKeyLengthComboBox.getSelectedIndex() + 1;
+		if (min > max) {
+			min = 1;
+			max = 10;
 		}
-		int keyLength = Vigenere.kasiski(ciphertextArea2.getText(),
-				minKeyLength, maxKeyLength);
-		txtKeyLengthKasiski.setText(Integer.toString(keyLength));
+		txtKeyLengthKasiski.setText(Integer.toString(keyLengthProfile
+				.getKasiskiKeyLength(min, max)));
 	}
 
-	private void performICKeylengthTest() {
-		txtKeyLengthEqn.setText(Double.toString(Vigenere
-				.estimateKeyLength(ciphertextArea2.getText())));
+	/**
+	 * Cancels any operation still running and starts task on a background
+	 * thread, showing its progress until it completes
+	 */
+	private void runTask(String description, CipherTask<?> task) {
+		if (currentTask != null) {
+			currentTask.cancel(true);
+		}
+		currentTask = task;
+		progressBar.setString(description + "...");
+		progressBar.setIndeterminate(true);
+		task.addPropertyChangeListener(new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if ("progress".equals(evt.getPropertyName())) {
+					progressBar.setIndeterminate(false);
+					progressBar.setValue((Integer) evt.getNewValue());
+				}
+			}
+		});
+		task.execute();
+	}
+
+	private void showError(String message) {
+		JOptionPane.showMessageDialog(frmVigenereTool, message,
+				"Vigenere Tool", JOptionPane.ERROR_MESSAGE);
+	}
+
+	/**
+	 * A cipher operation run off the event dispatch thread. The result is
+	 * passed to succeeded on the event dispatch thread unless the task was
+	 * cancelled by a newer one.
+	 */
+	private abstract class CipherTask<T> extends SwingWorker<T, Void> {
+
+		protected abstract void succeeded(T result);
+
+		/**
+		 * Returns a consumer passing percentages to the progress bar, for
+		 * analyses that report their progress
+		 */
+		protected IntConsumer progress() {
+			return new IntConsumer() {
+				@Override
+				public void accept(int percent) {
+					setProgress(Math.max(0, Math.min(100, percent)));
+				}
+			};
+		}
+
+		@Override
+		protected void done() {
+			if (currentTask == this) {
+				currentTask = null;
+				progressBar.setIndeterminate(false);
+				progressBar.setValue(0);
+				progressBar.setString("");
+			}
+			if (isCancelled()) {
+				return;
+			}
+			try {
+				succeeded(get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				showError(cause.getMessage() != null ? cause.getMessage()
+						: cause.toString());
+			}
+		}
 	}
 
 }